@@ -1,6 +1,8 @@
 package org.lynxz.customstepviewlibrary;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -11,11 +13,10 @@ import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
-
 /**
  * Created by zxz on 2016/6/16.
  * 步骤条
+ * 圆心及连接线坐标只在尺寸变化时计算,onDraw中不创建任何对象,同色的连接线一次drawLines绘制
  */
 public class StepView extends View {
 
@@ -28,12 +29,16 @@ public class StepView extends View {
     private float mCircleRadius;
     private static final String TAG = "StepView";
     private float EXPAND_MARK = 1.3f;
-    private ArrayList<Float> mCirclePosList = new ArrayList<>();
+    private float[] mCirclePos = new float[0];//各步骤圆心x坐标
+    private float[] mLinePts = new float[0];//各连接线的 x0,y0,x1,y1,已完成的在前
+    private float mCircleY;//圆心y坐标
     private static final int DEFAULT_STEP_COUNT = 3;
     private static final int MIN_STEP_COUNT = 2;
     private int mCurrentProgress;
     private Bitmap mStepDoneBitmap;
     private Rect mDoneBitmapSrcRect;
+    private final Rect mDoneBitmapDstRect = new Rect();
+    private int mDoneBitmapId = -1;
 
     public StepView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -48,7 +53,7 @@ public class StepView extends View {
         mStepCount = ta.getInt(R.styleable.StepView_step_count, DEFAULT_STEP_COUNT);
         mCircleRadius = ta.getDimension(R.styleable.StepView_circle_radius, 30);
         mCurrentProgress = ta.getInt(R.styleable.StepView_current_progress, 0);
-        int doneBitmapId = ta.getResourceId(R.styleable.StepView_done_bitmap, -1);
+        mDoneBitmapId = ta.getResourceId(R.styleable.StepView_done_bitmap, -1);
         ta.recycle();
         if (mStepCount <= 1) {
             mStepCount = DEFAULT_STEP_COUNT;
@@ -58,14 +63,85 @@ public class StepView extends View {
             mCurrentProgress = 0;
         }
 
-        if (doneBitmapId > 0) {
-            mStepDoneBitmap = BitmapFactory.decodeResource(getResources(), doneBitmapId);
-            mDoneBitmapSrcRect = new Rect(0, 0, mStepDoneBitmap.getWidth(), mStepDoneBitmap.getHeight());
+        if (mDoneBitmapId > 0) {
+            decodeDoneBitmap();
         }
 
         initPaint();
     }
 
+    /**
+     * 按绘制尺寸(圆的直径)采样解码完成图标,不保留原图分辨率
+     */
+    private void decodeDoneBitmap() {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(getResources(), mDoneBitmapId, opts);
+        int targetSize = (int) Math.ceil(mCircleRadius * 2);
+        int sampleSize = 1;
+        while (opts.outWidth / (sampleSize * 2) >= targetSize && opts.outHeight / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = sampleSize;
+        mStepDoneBitmap = BitmapFactory.decodeResource(getResources(), mDoneBitmapId, opts);
+        if (mStepDoneBitmap != null) {
+            mDoneBitmapSrcRect = new Rect(0, 0, mStepDoneBitmap.getWidth(), mStepDoneBitmap.getHeight());
+        }
+    }
+
+    /**
+     * 进程进入后台后(BACKGROUND及以上)或系统内存严重不足时释放完成图标
+     * 仅界面不可见(UI_HIDDEN)或前台内存偏低时保留,避免每次切到后台再回来都要重新解码
+     * 释放后在重新attach或窗口重新可见时解码,不在onDraw中解码
+     */
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_BACKGROUND) {
+                mStepDoneBitmap = null;
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            mStepDoneBitmap = null;
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().getApplicationContext().registerComponentCallbacks(mTrimCallbacks);
+        ensureDoneBitmap();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        // 进入后台被释放后,view未detach时在回到前台时重新解码
+        if (visibility == VISIBLE) {
+            ensureDoneBitmap();
+        }
+    }
+
+    private void ensureDoneBitmap() {
+        if (mStepDoneBitmap == null && mDoneBitmapId > 0) {
+            decodeDoneBitmap();
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getContext().getApplicationContext().unregisterComponentCallbacks(mTrimCallbacks);
+    }
+
     public void setCurrentProgress(int progress) {
         if (progress >= mStepCount) {
             mCurrentProgress = mStepCount;
@@ -87,13 +163,24 @@ public class StepView extends View {
     }
 
     private void compute() {
-        mCirclePosList.clear();
+        if (mCirclePos.length != mStepCount) {
+            mCirclePos = new float[mStepCount];
+            mLinePts = new float[(mStepCount - 1) * 4];
+        }
+        mCircleY = getMeasuredHeight() / 2;
         int measuredWidth = getMeasuredWidth();
         float startX = mCircleRadius * EXPAND_MARK + mCirclePaint.getStrokeWidth() + getPaddingLeft();
         float contentWidth = measuredWidth - getPaddingLeft() - getPaddingRight() - mCircleRadius * (EXPAND_MARK - 1) * 2;
         float lineLength = (contentWidth - mCircleRadius * 2) / (mStepCount - 1);
         for (int i = 0; i < mStepCount; i++) {
-            mCirclePosList.add(startX + i * lineLength);
+            mCirclePos[i] = startX + i * lineLength;
+        }
+        for (int i = 1; i < mStepCount; i++) {
+            int offset = (i - 1) * 4;
+            mLinePts[offset] = mCirclePos[i - 1] + mCircleRadius;
+            mLinePts[offset + 1] = mCircleY;
+            mLinePts[offset + 2] = mCirclePos[i] - mCircleRadius;
+            mLinePts[offset + 3] = mCircleY;
         }
     }
 
@@ -128,34 +215,35 @@ public class StepView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        float yPos = getMeasuredHeight() / 2;
-        // 绘制连接线
-        for (int i = 1; i < mCirclePosList.size(); i++) {
-            if (i < mCurrentProgress) {
-                mLinePaint.setColor(mFinishColor);
-            } else {
-                mLinePaint.setColor(mUnfinishColor);
-            }
-            canvas.drawLine(mCirclePosList.get(i - 1) + mCircleRadius, yPos, mCirclePosList.get(i) - mCircleRadius, yPos, mLinePaint);
+        float yPos = mCircleY;
+        int count = mCirclePos.length;
+        // 绘制连接线,第i条连接第i和i+1个圆,前 mCurrentProgress-1 条为已完成
+        int finishedLines = Math.max(0, Math.min(mCurrentProgress - 1, count - 1));
+        if (finishedLines > 0) {
+            mLinePaint.setColor(mFinishColor);
+            canvas.drawLines(mLinePts, 0, finishedLines * 4, mLinePaint);
+        }
+        if (finishedLines < count - 1) {
+            mLinePaint.setColor(mUnfinishColor);
+            canvas.drawLines(mLinePts, finishedLines * 4, (count - 1 - finishedLines) * 4, mLinePaint);
         }
 
         // 绘制圆形或者替代图片
-        for (int i = 0; i < mCirclePosList.size(); i++) {
-            float xPos = mCirclePosList.get(i);
-            if (i <= mCurrentProgress - 1) {
-                mCirclePaint.setColor(mFinishColor);
-                if (mStepDoneBitmap != null) {
-                    Rect dstRect = new Rect((int) (xPos - mCircleRadius), (int) (yPos - mCircleRadius),
-                            (int) (xPos + mCircleRadius), (int) (yPos + mCircleRadius));
-                    canvas.drawBitmap(mStepDoneBitmap, mDoneBitmapSrcRect, dstRect, mCirclePaint);
-
-                } else {
-                    canvas.drawCircle(xPos, yPos, mCircleRadius, mCirclePaint);
-                }
+        int finishedSteps = Math.min(mCurrentProgress, count);
+        mCirclePaint.setColor(mFinishColor);
+        for (int i = 0; i < finishedSteps; i++) {
+            float xPos = mCirclePos[i];
+            if (mStepDoneBitmap != null) {
+                mDoneBitmapDstRect.set((int) (xPos - mCircleRadius), (int) (yPos - mCircleRadius),
+                        (int) (xPos + mCircleRadius), (int) (yPos + mCircleRadius));
+                canvas.drawBitmap(mStepDoneBitmap, mDoneBitmapSrcRect, mDoneBitmapDstRect, mCirclePaint);
             } else {
-                mCirclePaint.setColor(mUnfinishColor);
                 canvas.drawCircle(xPos, yPos, mCircleRadius, mCirclePaint);
             }
         }
+        mCirclePaint.setColor(mUnfinishColor);
+        for (int i = finishedSteps; i < count; i++) {
+            canvas.drawCircle(mCirclePos[i], yPos, mCircleRadius, mCirclePaint);
+        }
     }
 }
@@ -0,0 +1,190 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 进程级的圆圈序号位图缓存
+ * 序号的取值范围很小(0~99,a,b,c...),同一页面中大量 {@link CircleIndexView} 重复绘制相同的抗锯齿圆圈和文字,
+ * 开启 {@link CircleIndexView#setUseBadgeAtlas(boolean)} 后各view只需绘制缓存好的bitmap
+ * 按 文本+尺寸+颜色+字体大小+线宽 缓存在LRU中,总大小不超过 {@link #setMaxBytes(int)}
+ * 未命中时在主线程中直接生成,也可以通过 {@link #prewarm} 提前在子线程中生成
+ * 缓存的bitmap被淘汰后不会recycle,view每次绘制时重新查找,不持有bitmap
+ */
+public class BadgeAtlas {
+
+    private static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static volatile BadgeAtlas sInstance;
+    private static int sMaxBytes = DEFAULT_MAX_BYTES;
+
+    private final LruCache<Key, Bitmap> mCache;
+    // 生成bitmap用的画笔,主线程和预生成线程共用,需持有自身锁
+    private final BadgePainter mPainter = new BadgePainter();
+    private final float[] mFit = new float[2];
+    // 主线程查找时复用的key,避免每帧创建对象
+    private final Key mLookupKey = new Key();
+    private final ThreadPoolExecutor mExecutor;
+
+    public static BadgeAtlas getInstance() {
+        if (sInstance == null) {
+            synchronized (BadgeAtlas.class) {
+                if (sInstance == null) {
+                    sInstance = new BadgeAtlas(sMaxBytes);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 设置缓存上限,需在首次使用前调用
+     */
+    public static void setMaxBytes(int maxBytes) {
+        synchronized (BadgeAtlas.class) {
+            sMaxBytes = Math.max(1, maxBytes);
+        }
+    }
+
+    private BadgeAtlas(int maxBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "badge-atlas");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        MemoryTrimmer.getInstance().addListener(mTrimListener);
+    }
+
+    // 内存不足时先减半,更严重时清空,之后绘制时重新生成
+    private final MemoryTrimmer.Listener mTrimListener = new MemoryTrimmer.Listener() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= MemoryTrimmer.LEVEL_BACKGROUND) {
+                mCache.evictAll();
+            } else {
+                mCache.trimToSize(mCache.maxSize() / 2);
+            }
+        }
+    };
+
+    /**
+     * 获取序号位图,未缓存时直接生成,在主线程中调用
+     *
+     * @param size     位图边长,px
+     * @param textSize 字体大小,px,线宽由字体大小决定
+     */
+    Bitmap get(String label, int size, int color, float textSize) {
+        Bitmap bitmap;
+        synchronized (mLookupKey) {
+            mLookupKey.set(label, size, color, textSize);
+            bitmap = mCache.get(mLookupKey);
+        }
+        if (bitmap == null) {
+            bitmap = render(label, size, color, textSize);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 在子线程中提前生成一组序号的位图,已缓存的跳过
+     * 参数与 {@link CircleIndexView} 测量后的尺寸及样式一致时才能命中,可使用 {@link CircleIndexView#prewarm(List)}
+     */
+    public void prewarm(final List<String> labels, final int size, final int color, final float textSize) {
+        if (labels == null || labels.isEmpty() || size <= 0) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String label : labels) {
+                    Key key = new Key();
+                    key.set(label, size, color, textSize);
+                    if (mCache.get(key) == null) {
+                        render(label, size, color, textSize);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    private Bitmap render(String label, int size, int color, float textSize) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        synchronized (mPainter) {
+            mPainter.setColor(color);
+            mPainter.setTextSize(textSize);
+            mPainter.fit(label, size, mFit);
+            mPainter.draw(canvas, 0, 0, size, label, mFit[0], mFit[1]);
+        }
+        Key key = new Key();
+        key.set(label, size, color, textSize);
+        mCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 缓存key,线宽由字体大小决定,因此不单独参与比较
+     */
+    private static class Key {
+        String label;
+        int size;
+        int color;
+        float textSize;
+
+        void set(String label, int size, int color, float textSize) {
+            this.label = label;
+            this.size = size;
+            this.color = color;
+            this.textSize = textSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return size == key.size && color == key.color
+                    && Float.compare(textSize, key.textSize) == 0
+                    && (label != null ? label.equals(key.label) : key.label == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = label != null ? label.hashCode() : 0;
+            result = 31 * result + size;
+            result = 31 * result + color;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.lynxz.customwidgetlibrary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 圆圈序号的文本表,各view共用
+ * 序号的取值范围很小(0~99,a~z,A~Z),文本预先生成,宽度及适配后的字体大小按 字体大小/圆圈尺寸 各计算一次,
+ * 列表中复用的view重新绑定序号时只需查表,不创建字符串也不测量
+ * 超出范围的序号按需生成,不缓存
+ * 宽度及适配结果按最近使用保留 {@link #MAX_CACHED_SIZES} 组,尺寸不断变化(如动画)时不会无限增长
+ */
+class BadgeLabels {
+
+    static final int SCHEME_NUMERIC = 0;//0,1,2...99
+    static final int SCHEME_LOWER_ALPHA = 1;//a,b,c...z
+    static final int SCHEME_UPPER_ALPHA = 2;//A,B,C...Z
+
+    private static final int NUMERIC_COUNT = 100;
+    private static final int ALPHA_COUNT = 26;
+    private static final int MAX_CACHED_SIZES = 16;
+
+    private static final String[][] LABELS = new String[3][];
+
+    static {
+        String[] numeric = new String[NUMERIC_COUNT];
+        for (int i = 0; i < NUMERIC_COUNT; i++) {
+            numeric[i] = String.valueOf(i);
+        }
+        String[] lower = new String[ALPHA_COUNT];
+        String[] upper = new String[ALPHA_COUNT];
+        for (int i = 0; i < ALPHA_COUNT; i++) {
+            lower[i] = String.valueOf((char) ('a' + i));
+            upper[i] = String.valueOf((char) ('A' + i));
+        }
+        LABELS[SCHEME_NUMERIC] = numeric;
+        LABELS[SCHEME_LOWER_ALPHA] = lower;
+        LABELS[SCHEME_UPPER_ALPHA] = upper;
+    }
+
+    // 测量用的画笔及结果,需持有BadgeLabels.class锁
+    private static final BadgePainter sPainter = new BadgePainter();
+    private static final float[] sFit = new float[2];
+    // key见 widthKey()/fitKey()
+    private static final LinkedHashMap<Long, float[]> sWidths = newLruMap();
+    private static final LinkedHashMap<Long, float[]> sFits = newLruMap();
+
+    private BadgeLabels() {
+    }
+
+    private static LinkedHashMap<Long, float[]> newLruMap() {
+        return new LinkedHashMap<Long, float[]>(MAX_CACHED_SIZES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+                return size() > MAX_CACHED_SIZES;
+            }
+        };
+    }
+
+    static int normalizeScheme(int scheme) {
+        return scheme == SCHEME_LOWER_ALPHA || scheme == SCHEME_UPPER_ALPHA ? scheme : SCHEME_NUMERIC;
+    }
+
+    /**
+     * 是否在预生成的范围内
+     */
+    static boolean isCached(int scheme, int index) {
+        return index >= 0 && index < LABELS[scheme].length;
+    }
+
+    /**
+     * 序号对应的文本,字母超过z时按 aa,ab... 继续
+     */
+    static String label(int scheme, int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (isCached(scheme, index)) {
+            return LABELS[scheme][index];
+        }
+        if (scheme == SCHEME_NUMERIC) {
+            return String.valueOf(index);
+        }
+        char base = scheme == SCHEME_LOWER_ALPHA ? 'a' : 'A';
+        StringBuilder sb = new StringBuilder();
+        int n = index + 1;
+        while (n > 0) {
+            n--;
+            sb.insert(0, (char) (base + n % ALPHA_COUNT));
+            n /= ALPHA_COUNT;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 各序号文本在textSize下的宽度,下标即序号
+     */
+    static synchronized float[] widths(int scheme, float textSize) {
+        Long key = widthKey(scheme, textSize);
+        float[] widths = sWidths.get(key);
+        if (widths == null) {
+            String[] labels = LABELS[scheme];
+            widths = new float[labels.length];
+            sPainter.setTextSize(textSize);
+            for (int i = 0; i < labels.length; i++) {
+                widths[i] = sPainter.measureText(labels[i]);
+            }
+            sWidths.put(key, widths);
+        }
+        return widths;
+    }
+
+    /**
+     * 各序号文本在边长为size的圆圈中适配后的字体大小及基线偏移,见 {@link BadgePainter#fit}
+     * 第i个序号的结果为 [2 * i] 及 [2 * i + 1]
+     */
+    static synchronized float[] fits(int scheme, float textSize, int size) {
+        Long key = fitKey(scheme, textSize, size);
+        float[] fits = sFits.get(key);
+        if (fits == null) {
+            String[] labels = LABELS[scheme];
+            fits = new float[labels.length * 2];
+            sPainter.setTextSize(textSize);
+            for (int i = 0; i < labels.length; i++) {
+                sPainter.fit(labels[i], size, sFit);
+                fits[2 * i] = sFit[0];
+                fits[2 * i + 1] = sFit[1];
+            }
+            sFits.put(key, fits);
+        }
+        return fits;
+    }
+
+    private static Long widthKey(int scheme, float textSize) {
+        return ((long) Float.floatToIntBits(textSize) << 32) | scheme;
+    }
+
+    private static Long fitKey(int scheme, float textSize, int size) {
+        return ((long) Float.floatToIntBits(textSize) << 32) | ((long) size << 2) | scheme;
+    }
+}
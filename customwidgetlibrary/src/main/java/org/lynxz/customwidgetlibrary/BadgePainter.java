@@ -0,0 +1,108 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.text.TextUtils;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 圆圈序号的绘制逻辑,{@link CircleIndexView} 及 {@link BadgeAtlas} 共用,保证两者绘制结果一致
+ * 画笔只在样式变化时设置,{@link #fit} 在文本或尺寸变化时调用一次,{@link #draw} 不创建任何对象
+ * 非线程安全,每个使用者持有自己的实例
+ */
+class BadgePainter {
+
+    private final Paint mCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mMeasurePaint = new Paint();//始终为mTextSize,用于测量
+    private final Rect mTextBounds = new Rect();
+    private float mTextSize;
+    private int mStrokeWidth;
+
+    BadgePainter() {
+        mCirclePaint.setStyle(Paint.Style.STROKE);
+        mTextPaint.setStyle(Paint.Style.FILL);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    void setColor(int color) {
+        mCirclePaint.setColor(color);
+        mTextPaint.setColor(color);
+    }
+
+    /**
+     * 圆圈线宽随字体大小变化
+     */
+    void setTextSize(float textSize) {
+        mTextSize = textSize;
+        mStrokeWidth = (int) (textSize / 15);
+        mMeasurePaint.setTextSize(textSize);
+        mCirclePaint.setStrokeWidth(mStrokeWidth);
+    }
+
+    float getTextSize() {
+        return mTextSize;
+    }
+
+    int getStrokeWidth() {
+        return mStrokeWidth;
+    }
+
+    float measureText(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return 0;
+        }
+        return mMeasurePaint.measureText(text);
+    }
+
+    /**
+     * 根据圆圈大小确定实际字体大小及基线
+     * 字体不超过mTextSize,放不下时按 {@link #calcMaxTextSize(int)} 缩小,文字按字形边界居中
+     *
+     * @param out 依次为字体大小,基线相对圆心的y偏移
+     */
+    void fit(String text, int size, float[] out) {
+        if (TextUtils.isEmpty(text) || size <= 0) {
+            out[0] = mTextSize;
+            out[1] = 0;
+            return;
+        }
+        mMeasurePaint.getTextBounds(text, 0, text.length(), mTextBounds);
+        float textSize = Math.min(mTextSize, calcMaxTextSize(size));
+        float scale = mTextSize > 0 ? textSize / mTextSize : 1;
+        out[0] = textSize;
+        out[1] = -(mTextBounds.top + mTextBounds.bottom) / 2f * scale;
+    }
+
+    /**
+     * 计算允许的最大字体大小
+     * 文字边界框的对角线不超过圆圈内径,字形尺寸与字体大小成正比,因此按mTextSize下的边界框等比换算
+     * 需先将文本边界测量到mTextBounds中
+     */
+    private float calcMaxTextSize(int size) {
+        float innerRadius = size / 2f - 2 * mStrokeWidth;
+        float halfWidth = mTextBounds.width() / 2f;
+        float halfHeight = mTextBounds.height() / 2f;
+        double halfDiagonal = Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight);
+        if (halfDiagonal <= 0 || innerRadius <= 0) {
+            return mTextSize;
+        }
+        return (float) (mTextSize * innerRadius / halfDiagonal);
+    }
+
+    /**
+     * 在(left, top)处绘制边长为size的圆圈序号
+     *
+     * @param textSize       {@link #fit} 得到的字体大小
+     * @param baselineOffset {@link #fit} 得到的基线偏移
+     */
+    void draw(Canvas canvas, float left, float top, int size, String text, float textSize, float baselineOffset) {
+        float radius = size / 2f;
+        canvas.drawCircle(left + radius, top + radius, radius - mStrokeWidth, mCirclePaint);
+        if (!TextUtils.isEmpty(text)) {
+            mTextPaint.setTextSize(textSize);
+            canvas.drawText(text, left + radius, top + radius + baselineOffset, mTextPaint);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 在一个view中横向绘制一排圆圈序号,代替一排 {@link CircleIndexView}
+ * 样式属性与CircleIndexView相同(foreColor, index, textSize),index为逗号分隔的多个序号,如 "1,2,3",
+ * 也可以通过 badgeCount 直接显示 0~badgeCount-1 (或 a,b,c...,见 indexScheme)
+ * 所有序号尺寸相同,一次onMeasure,一次onDraw,view层级中只有一个节点;点击时按位置确定是哪一个序号
+ */
+public class BadgeStripView extends View {
+
+    /**
+     * 序号点击回调
+     */
+    public interface OnBadgeClickListener {
+        /**
+         * @param position 被点击的序号的位置,从0开始
+         */
+        void onBadgeClick(BadgeStripView view, int position);
+    }
+
+    private final int AREA_MIN_SIZE = CircleIndexView.sp2px(getContext(), 19);//单个序号的最小尺寸
+    private float mTextSize;//文字大小,px
+    private int mForeColor;
+    private int mSpacing;//相邻序号的间距,px
+    private int mIndexScheme = CircleIndexView.INDEX_NUMERIC;
+
+    private final BadgePainter mPainter = new BadgePainter();
+    private final float[] mFit = new float[2];
+    private String[] mLabels = new String[0];
+    private int[] mIndices = new int[0];//通过setIndices设置的序号,setLabels时为-1
+    private int mCount = 0;
+    private float[] mFits = new float[0];//各序号的字体大小及基线偏移,下标见 BadgeLabels#fits
+    private float mMaxTextWidth;
+    private float[] mIndexWidths;//当前序号类型及字体大小下各序号的宽度
+    private float[] mIndexFits;//当前序号尺寸下各序号的字体大小及基线偏移
+    private int mBadgeSize;//单个序号的边长
+    private int mBadgeTop;
+
+    private OnBadgeClickListener mOnBadgeClickListener;
+    private int mPressedPosition = -1;
+    private int mClickedPosition = -1;//ACTION_UP时确定的序号,在performClick中回调
+
+    public BadgeStripView(Context context) {
+        this(context, null);
+    }
+
+    public BadgeStripView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public BadgeStripView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        TypedArray ta = context.getTheme().obtainStyledAttributes(attrs, R.styleable.BadgeStripView, defStyleAttr, 0);
+        this.mForeColor = ta.getColor(R.styleable.BadgeStripView_foreColor, getResources().getColor(R.color.circle_number_color));
+        this.mTextSize = ta.getDimensionPixelSize(R.styleable.BadgeStripView_textSize, 30);
+        this.mSpacing = ta.getDimensionPixelSize(R.styleable.BadgeStripView_badgeSpacing, 0);
+        this.mIndexScheme = BadgeLabels.normalizeScheme(
+                ta.getInt(R.styleable.BadgeStripView_indexScheme, CircleIndexView.INDEX_NUMERIC));
+        String labels = ta.getString(R.styleable.BadgeStripView_index);
+        int count = ta.getInt(R.styleable.BadgeStripView_badgeCount, 0);
+        ta.recycle();
+
+        mPainter.setColor(mForeColor);
+        mPainter.setTextSize(mTextSize);
+        if (!TextUtils.isEmpty(labels)) {
+            setLabels(labels.split(","));
+        } else if (count > 0) {
+            setBadgeCount(count);
+        }
+    }
+
+    /**
+     * 显示任意文本
+     */
+    public void setLabels(String... labels) {
+        ensureCapacity(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            mLabels[i] = labels[i].trim();
+            mIndices[i] = -1;
+        }
+        onLabelsChanged(labels.length);
+    }
+
+    /**
+     * 按 indexScheme 显示一组序号,如 {2, 5} 显示为 "2","5" 或 "c","f"
+     * 文本、宽度及适配后的字体大小来自 {@link CircleIndexView#setIndex(int)} 共用的预生成表
+     */
+    public void setIndices(int... indices) {
+        ensureCapacity(indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            mIndices[i] = indices[i];
+            mLabels[i] = BadgeLabels.label(mIndexScheme, indices[i]);
+        }
+        onLabelsChanged(indices.length);
+    }
+
+    /**
+     * 依次显示 0~count-1 对应的序号
+     */
+    public void setBadgeCount(int count) {
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            mIndices[i] = i;
+            mLabels[i] = BadgeLabels.label(mIndexScheme, i);
+        }
+        onLabelsChanged(count);
+    }
+
+    /**
+     * 设置序号类型 {@link CircleIndexView#INDEX_NUMERIC} 等,已通过 setIndices 设置的序号按新的类型显示
+     */
+    public void setIndexScheme(int scheme) {
+        scheme = BadgeLabels.normalizeScheme(scheme);
+        if (scheme == mIndexScheme) {
+            return;
+        }
+        mIndexScheme = scheme;
+        mIndexWidths = null;
+        mIndexFits = null;
+        for (int i = 0; i < mCount; i++) {
+            if (mIndices[i] >= 0) {
+                mLabels[i] = BadgeLabels.label(scheme, mIndices[i]);
+            }
+        }
+        onLabelsChanged(mCount);
+    }
+
+    public int getBadgeCount() {
+        return mCount;
+    }
+
+    public String getLabel(int position) {
+        return position >= 0 && position < mCount ? mLabels[position] : null;
+    }
+
+    public void setOnBadgeClickListener(OnBadgeClickListener listener) {
+        mOnBadgeClickListener = listener;
+        setClickable(listener != null);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mLabels.length < count) {
+            mLabels = new String[count];
+            mIndices = new int[count];
+            mFits = new float[count * 2];
+        }
+    }
+
+    private void onLabelsChanged(int count) {
+        for (int i = count; i < mCount; i++) {
+            mLabels[i] = null;
+        }
+        int oldCount = mCount;
+        float oldWidth = mMaxTextWidth;
+        mCount = count;
+        float maxWidth = 0;
+        for (int i = 0; i < count; i++) {
+            maxWidth = Math.max(maxWidth, textWidth(i));
+        }
+        mMaxTextWidth = maxWidth;
+        fitLabels();
+        if (count != oldCount || maxWidth != oldWidth) {
+            // 序号个数或最宽的文本变化时才需要重新测量
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    private float textWidth(int position) {
+        int index = mIndices[position];
+        if (BadgeLabels.isCached(mIndexScheme, index)) {
+            if (mIndexWidths == null) {
+                mIndexWidths = BadgeLabels.widths(mIndexScheme, mTextSize);
+            }
+            return mIndexWidths[index];
+        }
+        return mPainter.measureText(mLabels[position]);
+    }
+
+    /**
+     * 计算各序号的字体大小及基线,序号或尺寸变化时调用一次
+     */
+    private void fitLabels() {
+        if (mBadgeSize <= 0) {
+            return;
+        }
+        for (int i = 0; i < mCount; i++) {
+            int index = mIndices[i];
+            if (BadgeLabels.isCached(mIndexScheme, index)) {
+                if (mIndexFits == null) {
+                    mIndexFits = BadgeLabels.fits(mIndexScheme, mTextSize, mBadgeSize);
+                }
+                mFits[2 * i] = mIndexFits[2 * index];
+                mFits[2 * i + 1] = mIndexFits[2 * index + 1];
+            } else {
+                mPainter.fit(mLabels[i], mBadgeSize, mFit);
+                mFits[2 * i] = mFit[0];
+                mFits[2 * i + 1] = mFit[1];
+            }
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int minSize = (int) Math.max(Math.max(mTextSize, AREA_MIN_SIZE), mMaxTextWidth);
+        int height = resolveSize(minSize + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+        int badgeSize = Math.max(0, Math.min(minSize, height - getPaddingTop() - getPaddingBottom()));
+        int contentWidth = mCount > 0 ? mCount * badgeSize + (mCount - 1) * mSpacing : 0;
+        int width = resolveSize(contentWidth + getPaddingLeft() + getPaddingRight(), widthMeasureSpec);
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateBadgeSize();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        // 尺寸不变而序号变化时不会回调onSizeChanged
+        updateBadgeSize();
+    }
+
+    private void updateBadgeSize() {
+        int minSize = (int) Math.max(Math.max(mTextSize, AREA_MIN_SIZE), mMaxTextWidth);
+        int contentHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        int size = Math.max(0, Math.min(minSize, contentHeight));
+        mBadgeTop = getPaddingTop() + (contentHeight - size) / 2;
+        if (size != mBadgeSize) {
+            mBadgeSize = size;
+            mIndexFits = null;
+            fitLabels();
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int size = mBadgeSize;
+        if (size <= 0) {
+            return;
+        }
+        float left = getPaddingLeft();
+        for (int i = 0; i < mCount; i++) {
+            mPainter.draw(canvas, left, mBadgeTop, size, mLabels[i], mFits[2 * i], mFits[2 * i + 1]);
+            left += size + mSpacing;
+        }
+    }
+
+    /**
+     * 坐标(view内)所在的序号,不在任何序号的圆圈内时返回-1
+     */
+    public int badgeAt(float x, float y) {
+        int size = mBadgeSize;
+        if (size <= 0 || mCount == 0) {
+            return -1;
+        }
+        float offset = x - getPaddingLeft();
+        if (offset < 0) {
+            return -1;
+        }
+        int position = (int) (offset / (size + mSpacing));
+        if (position >= mCount) {
+            return -1;
+        }
+        float radius = size / 2f;
+        float dx = offset - position * (size + mSpacing) - radius;
+        float dy = y - mBadgeTop - radius;
+        return dx * dx + dy * dy <= radius * radius ? position : -1;
+    }
+
+    /**
+     * 获取序号在view内的区域,可用于定位弹窗等
+     */
+    public void getBadgeBounds(int position, Rect out) {
+        int left = getPaddingLeft() + position * (mBadgeSize + mSpacing);
+        out.set(left, mBadgeTop, left + mBadgeSize, mBadgeTop + mBadgeSize);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mOnBadgeClickListener == null) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mPressedPosition = badgeAt(event.getX(), event.getY());
+                return mPressedPosition >= 0;
+            case MotionEvent.ACTION_UP:
+                int position = mPressedPosition;
+                mPressedPosition = -1;
+                if (position >= 0 && position == badgeAt(event.getX(), event.getY())) {
+                    // 通过performClick分发,保证点击音效及无障碍事件
+                    mClickedPosition = position;
+                    performClick();
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedPosition = -1;
+                return true;
+            default:
+                return mPressedPosition >= 0;
+        }
+    }
+
+    /**
+     * 触摸点击时回调对应序号的 {@link OnBadgeClickListener},无障碍服务等触发的点击没有位置,只执行默认处理
+     */
+    @Override
+    public boolean performClick() {
+        boolean handled = super.performClick();
+        int position = mClickedPosition;
+        mClickedPosition = -1;
+        if (position >= 0 && mOnBadgeClickListener != null) {
+            mOnBadgeClickListener.onBadgeClick(this, position);
+            return true;
+        }
+        return handled;
+    }
+}
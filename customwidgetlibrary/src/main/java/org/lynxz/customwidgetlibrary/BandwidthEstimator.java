@@ -0,0 +1,73 @@
+package org.lynxz.customwidgetlibrary;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 下载速度估算
+ * mediaPlayer只提供缓冲百分比,无法直接得到码率和下载速度,
+ * 因此用 "每秒新增的已缓冲时长 / 1秒" 来表示下载速度与视频码率之比:
+ * 大于1表示下载比播放快,缓冲会越来越多;小于1则迟早会卡顿
+ * 只统计最近 {@link #WINDOW_MS} 内的采样,网络变化时能较快反映出来
+ */
+class BandwidthEstimator {
+
+    private static final long WINDOW_MS = 5000;
+    private static final long MIN_SPAN_MS = 500;//采样时间跨度太短时结果不可信
+    private static final int MAX_SAMPLES = 32;
+
+    // 环形缓冲区,记录采样时刻及当时已缓冲到的视频时长
+    private final long[] mTimes = new long[MAX_SAMPLES];
+    private final long[] mBuffered = new long[MAX_SAMPLES];
+    private int mHead = 0;//最早的采样
+    private int mCount = 0;
+
+    void reset() {
+        mHead = 0;
+        mCount = 0;
+    }
+
+    /**
+     * @param nowMs          采样时刻
+     * @param bufferedToMs   已缓冲到的视频位置
+     */
+    void addSample(long nowMs, long bufferedToMs) {
+        if (mCount > 0) {
+            int last = (mHead + mCount - 1) % MAX_SAMPLES;
+            if (bufferedToMs < mBuffered[last]) {
+                // seek后缓冲位置变化,之前的采样已无意义
+                reset();
+            } else if (bufferedToMs == mBuffered[last] && nowMs - mTimes[last] < MIN_SPAN_MS) {
+                return;
+            }
+        }
+
+        if (mCount == MAX_SAMPLES) {
+            mHead = (mHead + 1) % MAX_SAMPLES;
+            mCount--;
+        }
+        int index = (mHead + mCount) % MAX_SAMPLES;
+        mTimes[index] = nowMs;
+        mBuffered[index] = bufferedToMs;
+        mCount++;
+
+        // 丢弃窗口之外的采样,至少保留两个
+        while (mCount > 2 && nowMs - mTimes[mHead] > WINDOW_MS) {
+            mHead = (mHead + 1) % MAX_SAMPLES;
+            mCount--;
+        }
+    }
+
+    /**
+     * @return 下载速度与码率之比,采样不足时返回-1
+     */
+    float getRate() {
+        if (mCount < 2) {
+            return -1;
+        }
+        int last = (mHead + mCount - 1) % MAX_SAMPLES;
+        long span = mTimes[last] - mTimes[mHead];
+        if (span < MIN_SPAN_MS) {
+            return -1;
+        }
+        return (float) (mBuffered[last] - mBuffered[mHead]) / span;
+    }
+}
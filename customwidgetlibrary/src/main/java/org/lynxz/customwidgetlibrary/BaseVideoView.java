@@ -1,72 +1,64 @@
 package org.lynxz.customwidgetlibrary;
 
 import android.content.Context;
-import android.media.AudioManager;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.media.MediaPlayer;
 import android.net.Uri;
-import android.text.TextUtils;
+import android.os.Build;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.View;
 
-import java.io.IOException;
+import java.io.FileDescriptor;
+import java.util.List;
 
 import rx.Observable;
-import rx.Subscriber;
-import rx.Subscription;
-import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created by zxz on 2016/10/12.
  * description : 封装surfaceView和mediaPlayer 处理在断网时,小米pad上销毁时anr的问题
- * 注意: 目前只支持播放在线视频
+ * 支持在线视频,本地文件,assets及content uri,本地视频通过文件描述符直接交给mediaPlayer,不经过网络栈
  * VideoView销毁时,会去释放mediaPlayer,但是这一步骤经常导致anr,需要异步去释放,
  * 而系统自带的VideoView无法满足这一条
- * 另外,pause/stop/seekTo等操作也非常容易导致anr,因此这里要求有已经加载成功有缓冲后才允许执行这些操作
+ * 另外,pause/stop/seekTo等操作也非常容易导致anr,因此所有操作都通过 {@link PlayerCommandQueue} 在子线程中串行执行
+ * 播放控制逻辑在 {@link VideoPlayerController} 中,与 {@link TextureVideoView} 共用
  */
 public class BaseVideoView extends SurfaceView implements SurfaceHolder.Callback {
 
-    private static final String TAG = "BaseVideoView";
-
-    // all possible internal states
-    private static final int STATE_ERROR = -1;
-    private static final int STATE_IDLE = 0;//初始状态
-    private static final int STATE_PREPARING = 1;
-    private static final int STATE_PREPARED = 2;
-    private static final int STATE_PLAYING = 3;
-    private static final int STATE_PAUSED = 4;
-    private static final int STATE_PLAYBACK_COMPLETED = 5;//正常播放结束
-    private static final int STATE_RELEASING = 6;//正在异步释放中
-    private static final int STATE_STOPED = 7;// 返回桌面,切换页面等
-
-    // mCurrentState is a VideoView object's current state.
-    // mTargetState is the state that a method caller intends to reach.
-    // For instance, regardless the VideoView object's current state,
-    // calling pause() intends to bring the object to a target state
-    // of STATE_PAUSED.
-    private int mCurrentState = STATE_IDLE;
-    private int mTargetState = STATE_IDLE;
-    private int mSeekWhenPrepared = 0;  // recording the seek position while preparing
-
-    private SurfaceHolder mHolder;
-    private MediaPlayer mPlayer;
-    private String mVideoUrl;
-
-    //监听器
-    private MediaPlayer.OnPreparedListener mOnPreparedListener;
-    private MediaPlayer.OnErrorListener mOnErrorListener;
-    private MediaPlayer.OnCompletionListener mOnCompletionListener;
-
-    private int mCurrentBufferPercentage = -1;//当前已缓冲进度
-    // surface创建后才去初始化mediaPlayer,否则可能出现有声音无图像,黑屏
-    private boolean mSurfaceCreated = false;
-
-    // 获取视频尺寸,用于自动调整画面比例
-    private int mVideoWidth;
-    private int mVideoHeight;
-    private Subscription mReleaseSubscription;
+    /**
+     * 缩放模式,见 {@link #setScaleMode(int)}
+     * SCALE_FIT: 默认,view按视频比例缩小,画面完整显示
+     * SCALE_FILL: 宽度占满,高度按视频比例,超出高度限制的部分裁掉
+     * SCALE_CROP: view占满给定范围,画面保持比例居中裁剪
+     * SCALE_STRETCH: view占满给定范围,画面拉伸不保持比例
+     */
+    public static final int SCALE_FIT = 0;
+    public static final int SCALE_FILL = 1;
+    public static final int SCALE_CROP = 2;
+    public static final int SCALE_STRETCH = 3;
+
+    private VideoPlayerController mController;
+    private final int[] mMeasuredSize = new int[2];
+
+    // 封面,加载视频后到第一帧显示前绘制在surface上方,避免黑屏
+    private VideoPosterCache mPosterCache;
+    private long mPosterTimeMs = 0;
+    private String mPosterUrl;//正在等待封面的视频,第一帧显示后置为null
+    private Bitmap mPoster;
+    private final Rect mPosterRect = new Rect();
+    private final Rect mPosterSrc = new Rect();
+
+    /**
+     * 播放进度回调,播放中每帧回调一次,暂停/seek/卡顿时回调一次,在主线程中执行
+     * 进度由 {@link PositionClock} 推算,不涉及native调用
+     */
+    public interface OnPositionUpdateListener {
+        void onPositionUpdate(int position, int duration);
+    }
 
 
     public BaseVideoView(Context context) {
@@ -83,455 +75,525 @@ public class BaseVideoView extends SurfaceView implements SurfaceHolder.Callback
     }
 
     private void initView() {
-        mHolder = getHolder();
-        mHolder.addCallback(this);
+        getHolder().addCallback(this);
+        mController = new VideoPlayerController(this, new VideoPlayerController.RenderTarget() {
+            @Override
+            public void attach(PlayerEngine player) {
+                player.setDisplay(getHolder());
+            }
+
+            @Override
+            public void detach(PlayerEngine player) {
+                player.setDisplay(null);
+            }
+
+            @Override
+            public void applyScaleMode(PlayerEngine player, int scaleMode, int videoWidth, int videoHeight) {
+                // 缓冲区尺寸跟随view,不再setFixedSize,同比例的分辨率变化由解码器直接缩放到surface上
+                // 4.1以下不支持裁剪模式,SCALE_CROP/SCALE_FILL会退化为拉伸
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                    return;
+                }
+                try {
+                    player.setVideoScalingMode(scaleMode == SCALE_CROP || scaleMode == SCALE_FILL
+                            ? MediaPlayer.VIDEO_SCALING_MODE_SCALE_TO_FIT_WITH_CROPPING
+                            : MediaPlayer.VIDEO_SCALING_MODE_SCALE_TO_FIT);
+                } catch (IllegalStateException e) {
+                    // 播放器已释放或尚未设置数据源,下次prepare完成时会重新设置
+                }
+            }
+
+            @Override
+            public void onVideoChanged(String path) {
+                loadPoster(path);
+            }
+
+            @Override
+            public void onFirstFrame() {
+                mPosterUrl = null;
+                setPoster(null);
+            }
+
+            @Override
+            public void releaseRetainedSurface() {
+                // SurfaceView的surface随窗口销毁,不会保留
+            }
+        });
+    }
+
+    /**
+     * 播放器事件流,包括状态切换,缓冲,视频尺寸变化,错误,播放进度及性能统计,详见 {@link PlayerEvent}
+     * 1. 所有事件都在主线程中发出
+     * 2. 缓冲百分比和播放进度属于高频事件,每 {@link #setEventThrottle(long)} 毫秒最多发出一个(周期内的最后一个),
+     * 因此可能晚于之后发生的其他事件
+     * 3. 订阅者处理不过来时(如observeOn到其他线程),高频事件只保留最新的,其他事件全部缓存
+     * 每次调用返回的Observable相互独立,没有订阅者时不会产生任何事件
+     */
+    public Observable<PlayerEvent> events() {
+        return mController.events();
+    }
+
+    /**
+     * 高频事件的限流周期,对之后调用 {@link #events()} 返回的事件流生效
+     */
+    public void setEventThrottle(long throttleMs) {
+        mController.setEventThrottle(throttleMs);
     }
 
+    /**
+     * content/android.resource uri通过文件描述符播放,file uri按本地路径播放,其他按在线地址播放
+     */
     public void setVideoURI(Uri uri) {
-        setVideoPath(uri.getPath());
+        mController.setVideoURI(uri);
+    }
+
+    /**
+     * 播放文件描述符中的全部内容,内部会dup一份副本,调用者可在调用后随时关闭自己的描述符
+     * 暂停释放,出错恢复等重新加载时使用内部的副本,设置新视频时关闭
+     */
+    public void setVideoFileDescriptor(FileDescriptor fd) {
+        mController.setVideoFileDescriptor(fd);
+    }
+
+    /**
+     * 播放文件描述符中从offset开始的length字节,适用于多个视频打包在同一个文件中的情况
+     *
+     * @param length 小于0表示到文件结尾
+     */
+    public void setVideoFileDescriptor(FileDescriptor fd, long offset, long length) {
+        mController.setVideoFileDescriptor(fd, offset, length);
+    }
+
+    /**
+     * 播放已打开的AssetFileDescriptor,调用后即可关闭
+     */
+    public void setVideoAssetFileDescriptor(AssetFileDescriptor afd) {
+        mController.setVideoAssetFileDescriptor(afd);
+    }
+
+    /**
+     * 播放assets中的视频,需在build.gradle中配置 aaptOptions { noCompress "mp4" } 使其不被压缩
+     */
+    public void setVideoAsset(String assetName) {
+        mController.setVideoAsset(assetName);
     }
 
     /**
      * 获取视频路径信息
      */
     public String getVideoPath() {
-        return mVideoUrl;
+        return mController.getVideoPath();
     }
 
+    /**
+     * 设置视频地址并开始播放,可在任意线程调用
+     * 之前视频尚未完成的异步操作会因generation过期而被丢弃
+     */
     public void setVideoPath(String path) {
-        //        Log.i(TAG, "setVideoPath ");
-        // TODO: 2016/10/12 判断path合法性
-        mVideoUrl = path;
-        mTargetState = STATE_PLAYING;
-        updatePlayerPath();
-        //        requestLayout();
-        //        invalidate();
+        mController.setVideoPath(path);
     }
 
     /**
-     * 跳转到指定的播放位置
-     * 为避免断网等操作造成的大概率anr,这里要求有缓冲进度
+     * 设置本地缓存代理,下次加载视频时生效,传null则直接访问源地址
+     * 代理需由调用者先 {@link VideoCacheProxy#start()}
      */
-    public void seekTo(int msec) {
-        if (isInPlaybackState() && mCurrentBufferPercentage > 0) {
-            mPlayer.seekTo(msec);
-            mSeekWhenPrepared = 0;
-        } else {
-            mSeekWhenPrepared = msec;
-        }
+    public void setCacheProxy(VideoCacheProxy proxy) {
+        mController.setCacheProxy(proxy);
     }
 
     /**
-     * 开始播放
+     * surface销毁(如返回桌面)后,在graceMs内保留已prepare好的播放器,surface重建时直接重新关联并继续播放,
+     * 无需重新联网prepare;超时后释放播放器,surface重建时再从原进度重新加载
+     *
+     * @param graceMs 保留时长,0表示surface销毁时立即释放(默认)
      */
-    public void start() {
-        //        Log.i(TAG, "start ");
-        mTargetState = STATE_PLAYING;
-        if (isInPlaybackState()) {
-            if (mCurrentState == STATE_STOPED) {
-                mCurrentState = STATE_PREPARING;
-                mPlayer.prepareAsync();
-            } else {
-                mPlayer.start();
-                mCurrentState = STATE_PLAYING;
-            }
-        }
+    public void setRetainPlayerOnSurfaceLoss(long graceMs) {
+        mController.setRetainPlayerOnSurfaceLoss(graceMs);
     }
 
     /**
-     * 暂停
+     * 网络类错误(超时,连接断开等)的自动重试次数,0表示不自动恢复,默认为5次
+     * 重试时从出错前的进度重新加载,设置了缓存代理时已缓存的部分直接从本地读取
+     * 重试次数用完后才回调 {@link #setOnErrorListener(MediaPlayer.OnErrorListener)}
+     * 重新加载成功后需播放越过出错位置5秒才重新计数,每次都在同一位置出错的视频最多重试maxRetries次
      */
-    public void pause() {
-        //        Log.i(TAG, "pause ");
-        mTargetState = STATE_PAUSED;
-        if (isInPlaybackState() && mCurrentBufferPercentage > 0) {
-            if (mPlayer.isPlaying()) {
-                mPlayer.pause();
-                mCurrentState = STATE_PAUSED;
-            }
-        }
+    public void setAutoRecoveryRetries(int maxRetries) {
+        mController.setAutoRecoveryRetries(maxRetries);
     }
 
     /**
-     * 停止播放
-     * 不懂为啥不叫stop()...
+     * 自动恢复的重试间隔,从baseDelayMs开始按指数增长,最大不超过maxDelayMs,实际间隔带有随机抖动
      */
-    public void stopPlayback() {
-        Log.i(TAG, "stopPlayback " + mCurrentState);
-        mTargetState = STATE_STOPED;
-        // 这里去stop的话依然有可能anr
-        // onPrepared,start()后,但是还未开始播放,此时mCurrentState=state_playing
-        if (isInPlaybackState() && mCurrentBufferPercentage > 0) {
-            mPlayer.stop();
-            mCurrentState = STATE_STOPED;
-        }
+    public void setAutoRecoveryDelay(long baseDelayMs, long maxDelayMs) {
+        mController.setAutoRecoveryDelay(baseDelayMs, maxDelayMs);
     }
 
     /**
-     * 获取当前播放进度:毫秒
+     * 设置起播策略,在线视频prepare完成及播放中卡顿时,满足以下任一条件才(继续)播放:
+     * 1. 已缓冲的时长领先播放进度minBufferedMs
+     * 2. 估算的下载速度超过视频码率的rateFactor倍
+     * 3. 等待超过maxWaitMs
+     * 两个条件都 <= 0 时表示prepare完成后立即播放(默认)
      */
-    public int getCurrentPosition() {
-        if (isInPlaybackState()) {
-            return mPlayer.getCurrentPosition();
-        }
-        return 0;
+    public void setStartPolicy(long minBufferedMs, float rateFactor, long maxWaitMs) {
+        mController.setStartPolicy(minBufferedMs, rateFactor, maxWaitMs);
     }
 
     /**
-     * 获取视频总时长
+     * 最近几秒的下载速度与视频码率之比,大于1表示下载比播放快,数据不足时返回-1
      */
-    public int getDuration() {
-        if (isInPlaybackState()) {
-            return mPlayer.getDuration();
-        }
-        return -1;
+    public float getDownloadSpeedRatio() {
+        return mController.getDownloadSpeedRatio();
     }
 
     /**
-     * 获取缓存进度
+     * 是否因解码器配额不足而暂时释放了播放器,见 {@link PlaybackCoordinator}
      */
-    public int getBufferPercentage() {
-        if (mPlayer != null) {
-            return mCurrentBufferPercentage;
-        }
-        return 0;
+    public boolean isDecoderParked() {
+        return mController.isDecoderParked();
     }
 
     /**
-     * 当前播放器是否正在播放
+     * 设置性能统计回调,包括加载耗时,首帧耗时,卡顿,seek耗时,释放耗时等,详见 {@link PlaybackMetrics.Event}
      */
-    public boolean isPlaying() {
-        return isInPlaybackState() && mPlayer.isPlaying();
+    public void setPlaybackMetricsListener(PlaybackMetrics.Listener listener) {
+        mController.setPlaybackMetricsListener(listener);
     }
 
-    private boolean isInPlaybackState() {
-        return (mPlayer != null &&
-                mCurrentState != STATE_ERROR &&
-                mCurrentState != STATE_IDLE &&
-                mCurrentState != STATE_PREPARING &&
-                mCurrentState != STATE_RELEASING);
+    /**
+     * 设置播放列表,并从startIndex开始播放
+     * 当前视频加载成功后会预加载后续 {@link #setPrefetchCount(int)} 个视频的开头部分(需设置缓存代理)
+     */
+    public void setPlaylist(List<String> urls, int startIndex) {
+        mController.setPlaylist(urls, startIndex);
     }
 
-    public boolean canPause() {
-        return isInPlaybackState();
+    public List<String> getPlaylist() {
+        return mController.getPlaylist();
     }
 
+    public int getPlaylistIndex() {
+        return mController.getPlaylistIndex();
+    }
 
-    @Override
-    public void surfaceCreated(SurfaceHolder holder) {
-        //        Log.i(TAG, "surfaceCreated ");
-        mSurfaceCreated = true;
-        updatePlayerPath();
+    /**
+     * 播放列表中的下一个视频,已提前prepare好的话直接切换播放器
+     *
+     * @return 没有下一个视频时返回false
+     */
+    public boolean playNext() {
+        return mController.playNext();
+    }
 
+    /**
+     * 无缝连播模式,播放列表中的视频依次自动播放,中间没有黑屏
+     * 开启后会自动提前prepare下一个视频({@link #setPrepareNextEnabled(boolean)}),播放结束时直接切换播放器
+     * 纯音频流在4.1及以上系统使用 {@link MediaPlayer#setNextMediaPlayer(MediaPlayer)} 由系统衔接
+     * 切换到下一个视频时不会回调 {@link MediaPlayer.OnCompletionListener},只有列表播放完毕(不循环)时才回调
+     */
+    public void setGaplessPlaybackEnabled(boolean enabled) {
+        mController.setGaplessPlaybackEnabled(enabled);
     }
 
     /**
-     * 初始化MediaPlayer
+     * 播放列表是否循环播放,列表只有一个视频时直接使用 {@link MediaPlayer#setLooping(boolean)}
      */
-    private void initPlayer() {
-        if (mPlayer == null) {
-            //            Log.i(TAG, "...initPlayer ");
-            mPlayer = new MediaPlayer();
-            mCurrentState = STATE_IDLE;
+    public void setLoopPlaylist(boolean loop) {
+        mController.setLoopPlaylist(loop);
+    }
 
-            mPlayer.setOnBufferingUpdateListener(mBufferingUpdateListener);
-            mPlayer.setOnPreparedListener(mPreparedListener);
-            mPlayer.setOnVideoSizeChangedListener(mSizeChangedListener);
-            mPlayer.setOnCompletionListener(mCompletionListener);
-            mPlayer.setOnErrorListener(mErrorListener);
-            //            mPlayer.setOnSeekCompleteListener(new MediaPlayer.OnSeekCompleteListener() {
-            //                public void onSeekComplete(MediaPlayer m) {
-            //                    Log.i(TAG, "onSeekComplete ");
-            //                    m.start();
-            //                }
-            //            });
+    /**
+     * 预加载指定视频的开头部分到缓存代理中,在当前视频缓冲充足时才会下载
+     */
+    public void prefetch(List<String> urls) {
+        mController.prefetch(urls);
+    }
 
-            mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            mPlayer.setDisplay(mHolder);
-            mPlayer.setScreenOnWhilePlaying(true);
-        }
+    /**
+     * 当前视频加载成功后预加载的后续视频个数,0表示不预加载
+     */
+    public void setPrefetchCount(int count) {
+        mController.setPrefetchCount(count);
     }
 
     /**
-     * 将视频地址设置到mediaPlayer中,并异步加载播放
-     * 若已有播放,则release后再设置
+     * 每个视频预加载的字节数
      */
-    private void updatePlayerPath() {
-        //        Log.i(TAG, "updatePlayerPath ");
-        releasePlayerAsync();
+    public void setPrefetchBytes(long bytes) {
+        mController.setPrefetchBytes(bytes);
     }
 
-    private void resetPlayerUrl() {
-        try {
-            if (!TextUtils.isEmpty(mVideoUrl) && mPlayer != null) {
-                //                Log.i(TAG, "resetPlayerUrl ");
-                // idle状态才能设置视频地址,之后mPlayer进入initialized状态
-                if (mCurrentState == STATE_IDLE) {
-                    mPlayer.setDataSource(mVideoUrl);
-                    mPlayer.prepareAsync();
-                    mCurrentState = STATE_PREPARING;
-                }
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "resetPlayerUrl error " + e.getMessage());
-            e.printStackTrace();
-            mCurrentState = STATE_ERROR;
-            mTargetState = STATE_ERROR;
-        }
+    /**
+     * 预加载限速,0表示不限速
+     */
+    public void setPrefetchMaxBytesPerSecond(long bytesPerSecond) {
+        mController.setPrefetchMaxBytesPerSecond(bytesPerSecond);
     }
 
-    @Override
-    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-        //        Log.i(TAG, "surfaceChanged ");
+    /**
+     * 是否在当前视频加载成功后,提前用另一个播放器prepare播放列表中的下一个视频
+     * 开启后 {@link #playNext()} 可直接切换,但会多占用一个解码器
+     */
+    public void setPrepareNextEnabled(boolean enabled) {
+        mController.setPrepareNextEnabled(enabled);
     }
 
-    @Override
-    public void surfaceDestroyed(SurfaceHolder holder) {
-        //        Log.i(TAG, "surfaceDestroyed ");
-        mTargetState = STATE_IDLE;
-        mCurrentBufferPercentage = 0;
-        mSurfaceCreated = false;
-        releasePlayerAsync();
+    /**
+     * 精确跳转到指定的播放位置
+     * 在子线程中执行,避免断网时造成的anr;上一次seek完成前的连续调用只执行最后一次
+     */
+    public void seekTo(int msec) {
+        mController.seekTo(msec);
     }
 
     /**
-     * 进行异步释放mediaPlayer,这是小米pad上anr的主要问题
+     * 拖动进度条过程中的快速预览,只跳转到附近的关键帧,松手后再调用 {@link #seekTo(int)} 精确定位
      */
-    private void releasePlayerAsync() {
-        if (mCurrentState == STATE_RELEASING) {
-            Log.i(TAG, "正在releasePlayerAsync,return...");
-            return;
-        }
+    public void seekPreview(int msec) {
+        mController.seekPreview(msec);
+    }
 
-        Subscriber<Boolean> mReleaseSubscriber = new Subscriber<Boolean>() {
-            @Override
-            public void onCompleted() {
-            }
+    /**
+     * 开始播放
+     */
+    public void start() {
+        mController.start();
+    }
 
-            @Override
-            public void onError(Throwable e) {
-                e.printStackTrace();
-                Log.e(TAG, "releasePlayerAsync... onError " + e.getMessage());
-                mCurrentState = STATE_ERROR;
-            }
+    /**
+     * 暂停
+     */
+    public void pause() {
+        mController.pause();
+    }
 
-            @Override
-            public void onNext(Boolean b) {
-                mCurrentState = STATE_IDLE;
-                //如果用户重新设置视频链接，则在释放后重新加载
-                if (mTargetState == STATE_PLAYING && mSurfaceCreated) {
-                    initPlayer();
-                    resetPlayerUrl();
-                }
-            }
-        };
+    /**
+     * 停止播放
+     * 不懂为啥不叫stop()...
+     */
+    public void stopPlayback() {
+        mController.stopPlayback();
+    }
 
-        mReleaseObservable.observeOn(AndroidSchedulers.mainThread())
-                .subscribeOn(Schedulers.io())
-                .subscribe(mReleaseSubscriber);
+    /**
+     * 获取当前播放进度:毫秒
+     */
+    public int getCurrentPosition() {
+        return mController.getCurrentPosition();
+    }
 
+    /**
+     * 设置播放进度回调,用于进度条,字幕同步等需要每帧刷新的场景
+     */
+    public void setOnPositionUpdateListener(OnPositionUpdateListener l) {
+        mController.setOnPositionUpdateListener(l);
     }
 
-    Observable<Boolean> mReleaseObservable = Observable.create(new Observable.OnSubscribe<Boolean>() {
-        @Override
-        public void call(Subscriber<? super Boolean> subscriber) {
-            try {
-                mCurrentState = STATE_RELEASING;
-                if (mPlayer != null && mCurrentState != STATE_IDLE) {
-                    if (isInPlaybackState() && mCurrentBufferPercentage > 0) {
-                        mPlayer.stop();
-                    }
-                    mPlayer.release();
-                }
-                mPlayer = null;
-                subscriber.onNext(true);
-                subscriber.onCompleted();
-            } catch (Exception e) {
-                Log.e(TAG, "mReleaseObservable Exception " + e.getMessage());
-                e.printStackTrace();
-                subscriber.onError(e);
-            }
-        }
-    });
+    /**
+     * 获取视频总时长
+     */
+    public int getDuration() {
+        return mController.getDuration();
+    }
 
     /**
-     * 比较懒,直接复制的VideoView中的内容
-     * 主要就是利用 {@linkplain #mSizeChangedListener} 监听,根据视频尺寸来自适应的,不然会被强制拉伸
+     * 获取缓存进度
      */
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        //Log.i("@@@@", "onMeasure(" + MeasureSpec.toString(widthMeasureSpec) + ", "
-        //        + MeasureSpec.toString(heightMeasureSpec) + ")");
-
-        int width = getDefaultSize(mVideoWidth, widthMeasureSpec);
-        int height = getDefaultSize(mVideoHeight, heightMeasureSpec);
-        if (mVideoWidth > 0 && mVideoHeight > 0) {
-
-            int widthSpecMode = MeasureSpec.getMode(widthMeasureSpec);
-            int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
-            int heightSpecMode = MeasureSpec.getMode(heightMeasureSpec);
-            int heightSpecSize = MeasureSpec.getSize(heightMeasureSpec);
-
-            if (widthSpecMode == MeasureSpec.EXACTLY && heightSpecMode == MeasureSpec.EXACTLY) {
-                // the size is fixed
-                width = widthSpecSize;
-                height = heightSpecSize;
-
-                // for compatibility, we adjust size based on aspect ratio
-                if (mVideoWidth * height < width * mVideoHeight) {
-                    //Log.i("@@@", "image too wide, correcting");
-                    width = height * mVideoWidth / mVideoHeight;
-                } else if (mVideoWidth * height > width * mVideoHeight) {
-                    //Log.i("@@@", "image too tall, correcting");
-                    height = width * mVideoHeight / mVideoWidth;
-                }
-            } else if (widthSpecMode == MeasureSpec.EXACTLY) {
-                // only the width is fixed, adjust the height to match aspect ratio if possible
-                width = widthSpecSize;
-                height = width * mVideoHeight / mVideoWidth;
-                if (heightSpecMode == MeasureSpec.AT_MOST && height > heightSpecSize) {
-                    // couldn't match aspect ratio within the constraints
-                    height = heightSpecSize;
-                }
-            } else if (heightSpecMode == MeasureSpec.EXACTLY) {
-                // only the height is fixed, adjust the width to match aspect ratio if possible
-                height = heightSpecSize;
-                width = height * mVideoWidth / mVideoHeight;
-                if (widthSpecMode == MeasureSpec.AT_MOST && width > widthSpecSize) {
-                    // couldn't match aspect ratio within the constraints
-                    width = widthSpecSize;
-                }
-            } else {
-                // neither the width nor the height are fixed, try to use actual video size
-                width = mVideoWidth;
-                height = mVideoHeight;
-                if (heightSpecMode == MeasureSpec.AT_MOST && height > heightSpecSize) {
-                    // too tall, decrease both width and height
-                    height = heightSpecSize;
-                    width = height * mVideoWidth / mVideoHeight;
-                }
-                if (widthSpecMode == MeasureSpec.AT_MOST && width > widthSpecSize) {
-                    // too wide, decrease both width and height
-                    width = widthSpecSize;
-                    height = width * mVideoHeight / mVideoWidth;
-                }
-            }
-        } else {
-            // no size yet, just adopt the given spec sizes
-        }
-        setMeasuredDimension(width, height);
-    }
-
-    MediaPlayer.OnVideoSizeChangedListener mSizeChangedListener =
-            new MediaPlayer.OnVideoSizeChangedListener() {
-                public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
-                    mVideoWidth = mp.getVideoWidth();
-                    mVideoHeight = mp.getVideoHeight();
-                    if (mVideoWidth != 0 && mVideoHeight != 0) {
-                        getHolder().setFixedSize(mVideoWidth, mVideoHeight);
-                        requestLayout();
-                    }
-                }
-            };
-
-    private MediaPlayer.OnBufferingUpdateListener mBufferingUpdateListener =
-            new MediaPlayer.OnBufferingUpdateListener() {
-                public void onBufferingUpdate(MediaPlayer mp, int percent) {
-                    //                    Log.i(TAG, "onBufferingUpdate " + percent);
-                    // 这里有坑 o_O ,第一次回调的时候percent是100 （>﹏<）
-                    // 所以 mCurrentBufferPercentage 初值设置为负值,并在这里过滤掉第一次的回调值
-                    if (mCurrentBufferPercentage < 0 && percent >= 100) {
-                        percent = 0;
-                    }
-                    mCurrentBufferPercentage = percent;
-                    // seekTo()方法也有可能anr （╯－_－）╯╧╧ ,因此现在要求有缓存后才能seekTo
-                    if (mSeekWhenPrepared > 0) {
-                        seekTo(mSeekWhenPrepared);
-                    }
-                }
-            };
+    public int getBufferPercentage() {
+        return mController.getBufferPercentage();
+    }
+
+    /**
+     * 当前播放器是否正在播放
+     */
+    public boolean isPlaying() {
+        return mController.isPlaying();
+    }
+
+    public boolean canPause() {
+        return mController.canPause();
+    }
 
     public void setOnPreparedListener(MediaPlayer.OnPreparedListener l) {
-        mOnPreparedListener = l;
+        mController.setOnPreparedListener(l);
     }
 
     /**
      * 设置异常发生,回调接口
      */
     public void setOnErrorListener(MediaPlayer.OnErrorListener l) {
-        mOnErrorListener = l;
+        mController.setOnErrorListener(l);
     }
 
     public void setOnCompletionListener(MediaPlayer.OnCompletionListener l) {
-        mOnCompletionListener = l;
+        mController.setOnCompletionListener(l);
     }
 
-    MediaPlayer.OnPreparedListener mPreparedListener = new MediaPlayer.OnPreparedListener() {
-        @Override
-        public void onPrepared(MediaPlayer mp) {
-            mCurrentState = STATE_PREPARED;
-
-            // 设置当前surfaceView尺寸为视频尺寸,以便保持画面比例
-            mVideoWidth = mp.getVideoWidth();
-            mVideoHeight = mp.getVideoHeight();
-            if (mVideoWidth != 0 && mVideoHeight != 0) {
-                getHolder().setFixedSize(mVideoWidth, mVideoHeight);
-            }
+    /**
+     * 设置缩放模式,取值见 {@link #SCALE_FIT} 等
+     * 视频宽高比变化或切换模式时才重新layout,同比例的分辨率变化只缩放画面
+     */
+    public void setScaleMode(int scaleMode) {
+        mController.setScaleMode(scaleMode);
+        invalidate();
+    }
 
-            // 初始设置时要求直接播放
-            if (mTargetState == STATE_PLAYING) {
-                mPlayer.start();
-                mCurrentState = STATE_PLAYING;
-            }
+    public int getScaleMode() {
+        return mController.getScaleMode();
+    }
 
-            /**
-             *  TODO: 2016/10/13 这里是不是也得判断下网络啊?
-             *  videoView直接就seekTo,网络异常又还未缓冲到点时应该会anr
-             *  但是其实也很难避免seekTo时网络是好的,我在红米1s上测试就是断网后还要延迟一下才会收到消息
-             *  这时候去拖拽进度条仍会触发seekTo
-             * */
-            if (mSeekWhenPrepared > 0) {
-                seekTo(mSeekWhenPrepared);
-            }
+    /**
+     * 可见面积超过一半时自动播放,离开屏幕时自动暂停,用于列表中的视频
+     * 调用者主动 {@link #pause()} 的视频不会自动播放
+     */
+    public void setAutoPlayOnVisible(boolean enabled) {
+        mController.setAutoPlayOnVisible(enabled);
+    }
 
-            // 反馈给调用者,mPlayer已经加载成功
-            if (mOnPreparedListener != null) {
-                mOnPreparedListener.onPrepared(mPlayer);
-            }
+    /**
+     * 设置封面缓存,之后加载的视频在第一帧显示前绘制该视频的封面,传null则不显示封面
+     * 封面从视频的 {@link #setPosterTime(long)} 处截取,只支持在线视频和本地文件路径
+     */
+    public void setPosterCache(VideoPosterCache cache) {
+        if (cache != mPosterCache) {
+            mPosterUrl = null;
+            setPoster(null);
+            mPosterCache = cache;
         }
-    };
+    }
 
     /**
-     * MediaPlayer错误监听器
+     * 封面在视频中的时刻,默认为开头
      */
-    private MediaPlayer.OnErrorListener mErrorListener = new MediaPlayer.OnErrorListener() {
+    public void setPosterTime(long timeMs) {
+        mPosterTimeMs = Math.max(0, timeMs);
+    }
+
+    private void loadPoster(String path) {
+        VideoPosterCache cache = mPosterCache;
+        mPosterUrl = null;
+        setPoster(null);
+        if (cache == null || !VideoPosterCache.isSupported(path)) {
+            return;
+        }
+        mPosterUrl = path;
+        int maxWidth = getWidth() > 0 ? getWidth() : getResources().getDisplayMetrics().widthPixels;
+        cache.load(path, mPosterTimeMs, maxWidth, mPosterCallback);
+    }
+
+    private final VideoPosterCache.Callback mPosterCallback = new VideoPosterCache.Callback() {
         @Override
-        public boolean onError(MediaPlayer mp, int what, int extra) {
-            Log.d(TAG, "Error: " + what + "," + extra);
-            mCurrentState = STATE_ERROR;
-            mTargetState = STATE_ERROR;
-            if (mOnErrorListener != null) {
-                if (mOnErrorListener.onError(mPlayer, what, extra)) {
-                    return true;
-                }
+        public void onPosterLoaded(String url, long timeMs, Bitmap poster) {
+            // 已切换视频或第一帧已显示
+            if (poster != null && url.equals(mPosterUrl) && timeMs == mPosterTimeMs) {
+                setPoster(poster);
             }
-            return false;
         }
     };
 
-    /**
-     * 播放结束后通知调用者
-     */
-    private MediaPlayer.OnCompletionListener mCompletionListener =
-            new MediaPlayer.OnCompletionListener() {
-                public void onCompletion(MediaPlayer mp) {
-                    mCurrentState = STATE_PLAYBACK_COMPLETED;
-                    mTargetState = STATE_PLAYBACK_COMPLETED;
-                    if (mOnCompletionListener != null) {
-                        mOnCompletionListener.onCompletion(mPlayer);
-                    }
+    private void setPoster(Bitmap poster) {
+        if (poster == mPoster) {
+            return;
+        }
+        VideoPosterCache cache = mPosterCache;
+        if (mPoster != null && cache != null) {
+            cache.release(mPoster);
+        }
+        mPoster = poster;
+        if (poster != null && cache != null) {
+            cache.retain(poster);
+        }
+        // surfaceView默认不绘制自身内容,只在有封面时开启
+        setWillNotDraw(poster == null);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        Bitmap poster = mPoster;
+        if (poster != null) {
+            int width = getWidth();
+            int height = getHeight();
+            mPosterRect.set(0, 0, width, height);
+            mPosterSrc.set(0, 0, poster.getWidth(), poster.getHeight());
+            int scaleMode = mController.getScaleMode();
+            if ((scaleMode == SCALE_CROP || scaleMode == SCALE_FILL) && width > 0 && height > 0) {
+                // 与画面一致,保持比例居中裁剪
+                int srcWidth = mPosterSrc.width();
+                int srcHeight = mPosterSrc.height();
+                if ((long) srcWidth * height > (long) width * srcHeight) {
+                    int cropWidth = (int) ((long) srcHeight * width / height);
+                    mPosterSrc.left = (srcWidth - cropWidth) / 2;
+                    mPosterSrc.right = mPosterSrc.left + cropWidth;
+                } else {
+                    int cropHeight = (int) ((long) srcWidth * height / width);
+                    mPosterSrc.top = (srcHeight - cropHeight) / 2;
+                    mPosterSrc.bottom = mPosterSrc.top + cropHeight;
                 }
-            };
+            }
+            canvas.drawBitmap(poster, mPosterSrc, mPosterRect, null);
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        //        Log.i(TAG, "surfaceCreated ");
+        mController.onSurfaceCreated();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        //        Log.i(TAG, "surfaceChanged ");
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        //        Log.i(TAG, "surfaceDestroyed ");
+        mController.onSurfaceDestroyed();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mController.onAttachedToWindow();
+    }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mController.onDetachedFromWindow();
+        mPosterUrl = null;
+        setPoster(null);
+    }
 
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // 构造过程中也可能回调
+        if (mController != null) {
+            mController.onVisibilityChanged();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mController.onVisibilityChanged();
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        mController.onVisibilityChanged();
+    }
+
+    /**
+     * 根据视频尺寸来自适应,不然会被强制拉伸
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mController.measure(widthMeasureSpec, heightMeasureSpec, mMeasuredSize);
+        setMeasuredDimension(mMeasuredSize[0], mMeasuredSize[1]);
+    }
 }
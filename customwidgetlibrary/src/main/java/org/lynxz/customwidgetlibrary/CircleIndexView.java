@@ -3,26 +3,42 @@ package org.lynxz.customwidgetlibrary;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Paint;
+import android.graphics.Bitmap;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
 
+import java.util.List;
+
 
 /**
  * Created by zxz on 2016/3/3.
  * description : 圆圈内包含序号 0~99,a,b,c...
+ * 画笔及文字位置只在文本或尺寸变化时计算,onDraw中不创建任何对象
+ * 大量重复序号的页面可开启 {@link #setUseBadgeAtlas(boolean)},直接绘制 {@link BadgeAtlas} 中缓存的位图
  */
 public class CircleIndexView extends View {
 
+    /**
+     * 序号类型,见 {@link #setIndex(int)}
+     */
+    public static final int INDEX_NUMERIC = BadgeLabels.SCHEME_NUMERIC;//0,1,2...
+    public static final int INDEX_LOWER_ALPHA = BadgeLabels.SCHEME_LOWER_ALPHA;//a,b,c...
+    public static final int INDEX_UPPER_ALPHA = BadgeLabels.SCHEME_UPPER_ALPHA;//A,B,C...
+
     private float mTextSize;//文字大小,px
     private int circleSize;//绘图矩形区域大小
     private final int AREA_MIN_SIZE = sp2px(getContext(), 19);//绘图区域最小值
     private String mText;//绘制的文本
     private int mForeColor;//文本颜色
-    private Paint mPaint;
+    private final BadgePainter mPainter = new BadgePainter();
+    private final float[] mFit = new float[2];//实际字体大小及基线偏移,由 fitText() 计算
     private float mTextWidth;
-    private int mStrokeWidth;
+    private boolean mUseBadgeAtlas = false;
+    private int mIndexScheme = INDEX_NUMERIC;
+    private int mIndex = -1;//通过setIndex设置的序号,setText时为-1
+    private float[] mIndexWidths;//当前序号类型及字体大小下各序号的宽度
+    private float[] mIndexFits;//当前圆圈尺寸下各序号的字体大小及基线偏移
 
     public CircleIndexView(Context context) {
         this(context, null);
@@ -34,22 +50,118 @@ public class CircleIndexView extends View {
 
     public CircleIndexView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        this.mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         TypedArray ta = context.getTheme().obtainStyledAttributes(attrs, R.styleable.CircleIndexView, defStyleAttr, 0);
         this.mForeColor = ta.getColor(R.styleable.CircleIndexView_foreColor, getResources().getColor(R.color.circle_number_color));
         this.mText = ta.getString(R.styleable.CircleIndexView_index);
         this.mTextSize = ta.getDimensionPixelSize(R.styleable.CircleIndexView_textSize, 30);
-        this.mTextWidth = getTextWidth(mText);
-        this.mStrokeWidth = (int) (this.mTextSize / 15);
+        this.mUseBadgeAtlas = ta.getBoolean(R.styleable.CircleIndexView_useBadgeAtlas, false);
+        this.mIndexScheme = BadgeLabels.normalizeScheme(
+                ta.getInt(R.styleable.CircleIndexView_indexScheme, INDEX_NUMERIC));
         ta.recycle();
+
+        mPainter.setColor(mForeColor);
+        mPainter.setTextSize(mTextSize);
+        this.mTextWidth = getTextWidth(mText);
     }
 
     public void setText(String text) {
+        if (mIndex < 0 && TextUtils.equals(text, mText)) {
+            return;
+        }
+        mIndex = -1;
+        updateText(text, getTextWidth(text));
+    }
+
+    /**
+     * 设置序号,按 {@link #setIndexScheme(int)} 显示为数字或字母,如 2 显示为 "2" 或 "c"
+     * 文本及宽度来自各view共用的预生成表,列表中重新绑定时不创建字符串也不测量
+     *
+     * @param index 从0开始,小于0时不显示文字
+     */
+    public void setIndex(int index) {
+        index = Math.max(-1, index);
+        // setText之后mIndex同样为-1,此时按显示的文本判断,需要清除文字
+        if (index == mIndex && (index >= 0 || mText == null)) {
+            return;
+        }
+        mIndex = index;
+        if (BadgeLabels.isCached(mIndexScheme, index)) {
+            if (mIndexWidths == null) {
+                mIndexWidths = BadgeLabels.widths(mIndexScheme, mTextSize);
+            }
+            updateText(BadgeLabels.label(mIndexScheme, index), mIndexWidths[index]);
+        } else {
+            String label = BadgeLabels.label(mIndexScheme, index);
+            updateText(label, getTextWidth(label));
+        }
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * 设置序号类型 {@link #INDEX_NUMERIC}, {@link #INDEX_LOWER_ALPHA}, {@link #INDEX_UPPER_ALPHA},
+     * 已通过 {@link #setIndex(int)} 设置的序号按新的类型显示
+     */
+    public void setIndexScheme(int scheme) {
+        scheme = BadgeLabels.normalizeScheme(scheme);
+        if (scheme == mIndexScheme) {
+            return;
+        }
+        mIndexScheme = scheme;
+        mIndexWidths = null;
+        mIndexFits = null;
+        if (mIndex >= 0) {
+            int index = mIndex;
+            mIndex = -1;
+            setIndex(index);
+        }
+    }
+
+    private void updateText(String text, float textWidth) {
+        float oldWidth = mTextWidth;
         this.mText = text;
-        this.mTextWidth = getTextWidth(mText);
+        this.mTextWidth = textWidth;
+        fitText();
+        if (mTextWidth != oldWidth) {
+            // 宽度只影响wrap_content时的尺寸
+            requestLayout();
+        }
         invalidate();
     }
 
+    /**
+     * 是否使用进程级的位图缓存绘制,适用于同一页面中有大量序号的情况
+     * 缓存在内存紧张时会被自动清理
+     */
+    public void setUseBadgeAtlas(boolean useBadgeAtlas) {
+        if (mUseBadgeAtlas == useBadgeAtlas) {
+            return;
+        }
+        mUseBadgeAtlas = useBadgeAtlas;
+        if (useBadgeAtlas) {
+            MemoryTrimmer.getInstance().install(getContext());
+        }
+        invalidate();
+    }
+
+    /**
+     * 按当前尺寸及样式在子线程中提前生成一组序号的位图,需在测量完成后调用
+     */
+    public void prewarm(List<String> labels) {
+        MemoryTrimmer.getInstance().install(getContext());
+        BadgeAtlas.getInstance().prewarm(labels, circleSize, mForeColor, mTextSize);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mUseBadgeAtlas) {
+            MemoryTrimmer.getInstance().install(getContext());
+        }
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
@@ -64,28 +176,41 @@ public class CircleIndexView extends View {
         // Log.i("xxx", "circleSize " + circleSize + " mTextWidth = " + mTextWidth);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        this.circleSize = Math.min(w, h);
+        mIndexFits = null;
+        fitText();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        mPaint.setColor(mForeColor);
-        mPaint.setStrokeWidth(mStrokeWidth);
-        mPaint.setStyle(Paint.Style.STROKE);
-        float radius = this.circleSize / 2;
-        canvas.drawCircle(radius, radius, radius - mStrokeWidth, mPaint);
-
-        if (Math.abs(circleSize - mTextWidth) <= 2 * mStrokeWidth
-                || Math.abs(circleSize - mTextSize) <= 2 * mStrokeWidth) {
-            mTextSize *= 0.88;
+        if (circleSize <= 0) {
+            return;
         }
+        if (mUseBadgeAtlas) {
+            Bitmap badge = BadgeAtlas.getInstance().get(mText, circleSize, mForeColor, mTextSize);
+            canvas.drawBitmap(badge, 0, 0, null);
+            return;
+        }
+        mPainter.draw(canvas, 0, 0, circleSize, mText, mFit[0], mFit[1]);
+    }
 
-        mPaint.setStyle(Paint.Style.FILL);
-        mPaint.setTextAlign(Paint.Align.CENTER);
-        mPaint.setTextSize(this.mTextSize);
-
-        Paint.FontMetrics fontMetrics = mPaint.getFontMetrics();
-        float fontHeight = fontMetrics.descent - fontMetrics.ascent;
-        float baseY = radius - (fontMetrics.descent - fontHeight / 2);
-        canvas.drawText(this.mText, radius, baseY, mPaint);
+    /**
+     * 根据圆圈大小确定实际字体大小及基线,文本或尺寸变化时调用一次,见 {@link BadgePainter#fit}
+     */
+    private void fitText() {
+        if (circleSize > 0 && BadgeLabels.isCached(mIndexScheme, mIndex)) {
+            if (mIndexFits == null) {
+                mIndexFits = BadgeLabels.fits(mIndexScheme, mTextSize, circleSize);
+            }
+            mFit[0] = mIndexFits[2 * mIndex];
+            mFit[1] = mIndexFits[2 * mIndex + 1];
+            return;
+        }
+        mPainter.fit(mText, circleSize, mFit);
     }
 
     public static int sp2px(Context context, float spValue) {
@@ -94,24 +219,19 @@ public class CircleIndexView extends View {
     }
 
     public boolean isNumeric(String str) {
-        if (!TextUtils.isEmpty(str))
-            return str.matches("^[0-9]*$");
-        else {
+        if (TextUtils.isEmpty(str)) {
             return false;
         }
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     public float getTextWidth(String str) {
-        Paint pFont = new Paint();
-        pFont.setTextSize(this.mTextSize);
-        return pFont.measureText(str);
-    }
-
-    /**
-     * 计算允许的最大字体大小
-     */
-    private float calcMaxTextSize() {
-        double powSize = Math.abs(Math.pow(circleSize, 2) - Math.pow(mTextWidth / 2, 2));
-        return (float) Math.pow(powSize, 0.5);
+        return mPainter.measureText(str);
     }
 }
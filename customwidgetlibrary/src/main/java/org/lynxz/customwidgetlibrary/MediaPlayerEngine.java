@@ -0,0 +1,226 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 基于 {@link MediaPlayer} 的 {@link PlayerEngine}
+ * MediaPlayer从 {@link MediaPlayerPool} 中租借, {@link #release()} 时reset后归还,每次租借对应一个新的engine对象,
+ * 因此池化后engine的身份仍可用于区分不同视频的回调
+ */
+class MediaPlayerEngine implements PlayerEngine, MediaPlayer.OnPreparedListener, MediaPlayer.OnCompletionListener,
+        MediaPlayer.OnBufferingUpdateListener, MediaPlayer.OnSeekCompleteListener,
+        MediaPlayer.OnVideoSizeChangedListener, MediaPlayer.OnErrorListener, MediaPlayer.OnInfoListener {
+
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public PlayerEngine create() {
+            MediaPlayer player = MediaPlayerPool.getInstance().acquire();
+            player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            return new MediaPlayerEngine(player);
+        }
+    };
+
+    // MediaPlayer.seekTo(long, int) 及 SEEK_CLOSEST 在8.0中才加入
+    private static final int SDK_SEEK_MODE = 26;
+    private static final int SEEK_CLOSEST = 3;
+    private static volatile Method sSeekWithMode;
+
+    private final MediaPlayer mPlayer;
+    private Listener mListener;
+
+    MediaPlayerEngine(MediaPlayer player) {
+        mPlayer = player;
+    }
+
+    /**
+     * 对外回调(如 OnPreparedListener)仍以MediaPlayer为参数,其他实现返回null
+     */
+    static MediaPlayer unwrap(PlayerEngine engine) {
+        return engine instanceof MediaPlayerEngine ? ((MediaPlayerEngine) engine).mPlayer : null;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        mListener = listener;
+        boolean set = listener != null;
+        mPlayer.setOnPreparedListener(set ? this : null);
+        mPlayer.setOnCompletionListener(set ? this : null);
+        mPlayer.setOnBufferingUpdateListener(set ? this : null);
+        mPlayer.setOnSeekCompleteListener(set ? this : null);
+        mPlayer.setOnVideoSizeChangedListener(set ? this : null);
+        mPlayer.setOnErrorListener(set ? this : null);
+        mPlayer.setOnInfoListener(set ? this : null);
+    }
+
+    @Override
+    public void setDisplay(SurfaceHolder holder) {
+        mPlayer.setDisplay(holder);
+        if (holder != null) {
+            mPlayer.setScreenOnWhilePlaying(true);
+        }
+    }
+
+    @Override
+    public void setSurface(Surface surface) {
+        mPlayer.setSurface(surface);
+    }
+
+    @Override
+    public void setVideoScalingMode(int mode) {
+        mPlayer.setVideoScalingMode(mode);
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mPlayer.getCurrentPosition();
+    }
+
+    @Override
+    public int getDuration() {
+        return mPlayer.getDuration();
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return mPlayer.getVideoWidth();
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return mPlayer.getVideoHeight();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mPlayer.isPlaying();
+    }
+
+    @Override
+    public void setDataSource(String path) throws IOException {
+        mPlayer.setDataSource(path);
+    }
+
+    @Override
+    public void setDataSource(MediaSource source) throws IOException {
+        source.applyTo(mPlayer);
+    }
+
+    @Override
+    public void prepareAsync() {
+        mPlayer.prepareAsync();
+    }
+
+    @Override
+    public void start() {
+        mPlayer.start();
+    }
+
+    @Override
+    public void pause() {
+        mPlayer.pause();
+    }
+
+    @Override
+    public void stop() {
+        mPlayer.stop();
+    }
+
+    /**
+     * 8.0及以上通过 seekTo(msec, SEEK_CLOSEST) 精确定位,低版本只能使用seekTo(int),由系统决定精度
+     * seekTo(int)在各版本中都是seek到关键帧
+     */
+    @Override
+    public void seekTo(int msec, boolean exact) throws Exception {
+        if (exact && Build.VERSION.SDK_INT >= SDK_SEEK_MODE) {
+            Method method = sSeekWithMode;
+            if (method == null) {
+                method = MediaPlayer.class.getMethod("seekTo", long.class, int.class);
+                sSeekWithMode = method;
+            }
+            method.invoke(mPlayer, (long) msec, SEEK_CLOSEST);
+        } else {
+            mPlayer.seekTo(msec);
+        }
+    }
+
+    /**
+     * setNextMediaPlayer在4.1中才加入,低版本忽略
+     */
+    @Override
+    public void setNextEngine(PlayerEngine next) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mPlayer.setNextMediaPlayer(unwrap(next));
+        }
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        mPlayer.setLooping(looping);
+    }
+
+    @Override
+    public void release() {
+        mListener = null;
+        MediaPlayerPool.getInstance().recycle(mPlayer);
+    }
+
+    @Override
+    public void onPrepared(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onPrepared(this);
+        }
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onCompletion(this);
+        }
+    }
+
+    @Override
+    public void onBufferingUpdate(MediaPlayer mp, int percent) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onBufferingUpdate(this, percent);
+        }
+    }
+
+    @Override
+    public void onSeekComplete(MediaPlayer mp) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onSeekComplete(this);
+        }
+    }
+
+    @Override
+    public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onVideoSizeChanged(this, width, height);
+        }
+    }
+
+    @Override
+    public boolean onError(MediaPlayer mp, int what, int extra) {
+        Listener listener = mListener;
+        return listener != null && listener.onError(this, what, extra);
+    }
+
+    @Override
+    public boolean onInfo(MediaPlayer mp, int what, int extra) {
+        Listener listener = mListener;
+        return listener != null && listener.onInfo(this, what, extra);
+    }
+}
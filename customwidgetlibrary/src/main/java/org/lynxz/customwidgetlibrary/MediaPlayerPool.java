@@ -0,0 +1,242 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 进程级MediaPlayer复用池
+ * 切换视频时不再 release() 后重新 new MediaPlayer(),而是 reset() 后归还到池中,下次直接取出复用,
+ * 减少native层的销毁/创建开销
+ * 使用方式: {@link #acquire()} 租借一个处于idle状态的播放器, 用完后调用 {@link #recycle(MediaPlayer)} 归还, 每次租借只能归还一次
+ * 注意: reset()/release() 与 stop() 一样可能导致anr,因此 {@link #recycle(MediaPlayer)} 需要在子线程中调用
+ */
+public class MediaPlayerPool {
+
+    private static final String TAG = "MediaPlayerPool";
+
+    private static final int DEFAULT_MAX_IDLE_COUNT = 2;//默认最多缓存的空闲播放器数量
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 30 * 1000;//空闲超过该时长的播放器会被释放
+
+    private static volatile MediaPlayerPool sInstance;
+
+    // 空闲播放器,队首为最近归还的
+    private final LinkedList<IdlePlayer> mIdlePlayers = new LinkedList<>();
+    // 已借出的播放器
+    private final Set<MediaPlayer> mLeasedPlayers =
+            Collections.newSetFromMap(new IdentityHashMap<MediaPlayer, Boolean>());
+
+    private int mMaxIdleCount = DEFAULT_MAX_IDLE_COUNT;
+    private long mIdleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private final Scheduler.Worker mEvictWorker = Schedulers.io().createWorker();
+
+    public static MediaPlayerPool getInstance() {
+        if (sInstance == null) {
+            synchronized (MediaPlayerPool.class) {
+                if (sInstance == null) {
+                    sInstance = new MediaPlayerPool();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private MediaPlayerPool() {
+        MemoryTrimmer.getInstance().addListener(mTrimListener);
+    }
+
+    // 内存不足时释放所有空闲播放器,release可能阻塞,在子线程中执行
+    private final MemoryTrimmer.Listener mTrimListener = new MemoryTrimmer.Listener() {
+        @Override
+        public void onTrimMemory(int level) {
+            mEvictWorker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    clear();
+                }
+            });
+        }
+    };
+
+    /**
+     * 设置最多缓存的空闲播放器数量,超出部分会直接release
+     */
+    public synchronized void setMaxIdleCount(int maxIdleCount) {
+        mMaxIdleCount = Math.max(0, maxIdleCount);
+    }
+
+    /**
+     * 设置空闲播放器的最长保留时间
+     */
+    public synchronized void setIdleTimeout(long timeoutMs) {
+        mIdleTimeoutMs = Math.max(0, timeoutMs);
+    }
+
+    /**
+     * 租借一个idle状态的播放器,池中没有空闲的则新建
+     * 返回的播放器未设置任何监听器和display
+     */
+    public MediaPlayer acquire() {
+        MediaPlayer player = null;
+        synchronized (this) {
+            if (!mIdlePlayers.isEmpty()) {
+                player = mIdlePlayers.removeFirst().player;
+            }
+        }
+
+        if (player == null) {
+            player = new MediaPlayer();
+        }
+
+        synchronized (this) {
+            mLeasedPlayers.add(player);
+        }
+        return player;
+    }
+
+    /**
+     * 归还播放器,reset后放回池中,池满或reset失败则直接release
+     * 可能阻塞,需在子线程调用
+     */
+    public void recycle(MediaPlayer player) {
+        if (player == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!mLeasedPlayers.remove(player)) {
+                Log.w(TAG, "recycle a player not leased from pool, ignore...");
+                return;
+            }
+        }
+
+        clearListeners(player);
+        try {
+            player.reset();
+        } catch (Exception e) {
+            // 播放器状态异常,无法复用
+            Log.e(TAG, "recycle reset error " + e.getMessage());
+            releaseQuietly(player);
+            return;
+        }
+
+        boolean pooled = false;
+        synchronized (this) {
+            if (mIdlePlayers.size() < mMaxIdleCount) {
+                mIdlePlayers.addFirst(new IdlePlayer(player, SystemClock.elapsedRealtime()));
+                pooled = true;
+            }
+        }
+
+        if (!pooled) {
+            releaseQuietly(player);
+            return;
+        }
+        scheduleEvict();
+    }
+
+    /**
+     * 释放所有已空闲超时的播放器
+     */
+    public void evictIdle() {
+        LinkedList<MediaPlayer> expired = new LinkedList<>();
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            Iterator<IdlePlayer> it = mIdlePlayers.iterator();
+            while (it.hasNext()) {
+                IdlePlayer idle = it.next();
+                if (now - idle.idleSince >= mIdleTimeoutMs) {
+                    it.remove();
+                    expired.add(idle.player);
+                }
+            }
+        }
+
+        for (MediaPlayer player : expired) {
+            releaseQuietly(player);
+        }
+    }
+
+    /**
+     * 释放池中所有空闲播放器,已借出的不受影响
+     */
+    public void clear() {
+        LinkedList<MediaPlayer> idle = new LinkedList<>();
+        synchronized (this) {
+            for (IdlePlayer p : mIdlePlayers) {
+                idle.add(p.player);
+            }
+            mIdlePlayers.clear();
+        }
+
+        for (MediaPlayer player : idle) {
+            releaseQuietly(player);
+        }
+    }
+
+    private void scheduleEvict() {
+        long delay;
+        synchronized (this) {
+            delay = mIdleTimeoutMs;
+        }
+        mEvictWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                evictIdle();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 池中播放器不能再持有原videoView及其他播放器的引用
+     */
+    private void clearListeners(MediaPlayer player) {
+        player.setOnBufferingUpdateListener(null);
+        player.setOnPreparedListener(null);
+        player.setOnVideoSizeChangedListener(null);
+        player.setOnCompletionListener(null);
+        player.setOnErrorListener(null);
+        player.setOnSeekCompleteListener(null);
+        player.setOnInfoListener(null);
+        try {
+            // 解除无缝连播时通过setNextMediaPlayer建立的关联
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                player.setNextMediaPlayer(null);
+            }
+            player.setDisplay(null);
+        } catch (Exception e) {
+            Log.e(TAG, "clearListeners setDisplay error " + e.getMessage());
+        }
+    }
+
+    private void releaseQuietly(MediaPlayer player) {
+        try {
+            player.release();
+        } catch (Exception e) {
+            Log.e(TAG, "release error " + e.getMessage());
+        }
+    }
+
+    private static class IdlePlayer {
+        final MediaPlayer player;
+        final long idleSince;
+
+        IdlePlayer(MediaPlayer player, long idleSince) {
+            this.player = player;
+            this.idleSince = idleSince;
+        }
+    }
+}
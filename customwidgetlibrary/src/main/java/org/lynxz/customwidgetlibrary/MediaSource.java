@@ -0,0 +1,154 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 本地视频数据源
+ * 本地文件,assets及content uri直接以文件描述符(及偏移,长度)设置给mediaPlayer,不经过网络栈和缓存代理,也没有额外的拷贝
+ * 需要打开文件的数据源(assets,content uri)在 {@link #applyTo(MediaPlayer)} 中打开,
+ * 该方法由 {@link PlayerCommandQueue} 在子线程中调用,避免content provider阻塞主线程
+ * 调用者提供的文件描述符会dup一份由本类持有,暂停释放/出错恢复等重新prepare时仍可使用,
+ * 调用者可以随时关闭自己的描述符;持有的副本在 {@link #close()} 时关闭
+ */
+class MediaSource {
+
+    private static final int TYPE_FD = 1;//调用者提供的文件描述符,使用dup后的副本
+    private static final int TYPE_ASSET = 2;//assets中未压缩的文件
+    private static final int TYPE_URI = 3;//content/android.resource/file uri
+    // setDataSource(fd, offset, length)中表示到文件结尾的长度,与MediaPlayer.setDataSource(fd)一致
+    private static final long LENGTH_TO_END = 0x7ffffffffffffffL;
+
+    private final int mType;
+    private final String mKey;
+    private final Context mContext;
+    private final FileDescriptor mFd;
+    private final ParcelFileDescriptor mOwnedFd;//dup得到的副本,dup失败时为null,直接使用调用者的描述符
+    private boolean mClosed = false;
+    private final long mOffset;
+    private final long mLength;
+    private final String mAssetName;
+    private final Uri mUri;
+
+    private MediaSource(int type, String key, Context context, ParcelFileDescriptor ownedFd, FileDescriptor fd,
+                        long offset, long length, String assetName, Uri uri) {
+        mType = type;
+        mKey = key;
+        mContext = context;
+        mOwnedFd = ownedFd;
+        mFd = fd;
+        mOffset = offset;
+        mLength = length;
+        mAssetName = assetName;
+        mUri = uri;
+    }
+
+    /**
+     * @param length 小于0表示到文件结尾
+     */
+    static MediaSource fromFileDescriptor(FileDescriptor fd, long offset, long length) {
+        ParcelFileDescriptor owned = null;
+        try {
+            owned = ParcelFileDescriptor.dup(fd);
+        } catch (IOException e) {
+            Log.w("MediaSource", "dup fd error " + e.getMessage() + ", caller must keep fd open");
+        }
+        return new MediaSource(TYPE_FD, "fd://" + System.identityHashCode(fd) + "/" + offset + "/" + length,
+                null, owned, owned != null ? owned.getFileDescriptor() : fd, offset, length, null, null);
+    }
+
+    /**
+     * assets中的文件需要以不压缩的方式打包(aapt的 noCompress 配置),否则无法获取文件描述符
+     */
+    static MediaSource fromAsset(Context context, String assetName) {
+        return new MediaSource(TYPE_ASSET, "asset:///" + assetName, context.getApplicationContext(),
+                null, null, 0, -1, assetName, null);
+    }
+
+    static MediaSource fromUri(Context context, Uri uri) {
+        return new MediaSource(TYPE_URI, uri.toString(), context.getApplicationContext(),
+                null, null, 0, -1, null, uri);
+    }
+
+    /**
+     * 是否需要通过文件描述符播放,http/rtsp等在线地址仍按路径播放
+     */
+    static boolean isLocalUri(Uri uri) {
+        String scheme = uri.getScheme();
+        return ContentResolver.SCHEME_CONTENT.equals(scheme)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme);
+    }
+
+    /**
+     * 用于标识视频的字符串,与在线视频的地址作用相同
+     */
+    String getKey() {
+        return mKey;
+    }
+
+    /**
+     * 设置到mediaPlayer中,可能阻塞,需在子线程中调用
+     * mediaPlayer会复制文件描述符,因此这里打开的描述符设置完即可关闭
+     */
+    void applyTo(MediaPlayer player) throws IOException {
+        switch (mType) {
+            case TYPE_FD:
+                synchronized (this) {
+                    if (mClosed) {
+                        throw new IOException("source closed " + mKey);
+                    }
+                    player.setDataSource(mFd, mOffset, mLength < 0 ? LENGTH_TO_END : mLength);
+                }
+                break;
+            case TYPE_ASSET:
+                applyAndClose(player, mContext.getAssets().openFd(mAssetName));
+                break;
+            case TYPE_URI:
+                AssetFileDescriptor afd = mContext.getContentResolver().openAssetFileDescriptor(mUri, "r");
+                if (afd == null) {
+                    throw new IOException("can not open " + mUri);
+                }
+                applyAndClose(player, afd);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 不再使用时关闭持有的文件描述符副本,之后 {@link #applyTo} 会失败,可在任意线程调用
+     */
+    synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        if (mOwnedFd != null) {
+            try {
+                mOwnedFd.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static void applyAndClose(MediaPlayer player, AssetFileDescriptor afd) throws IOException {
+        try {
+            long length = afd.getDeclaredLength();
+            player.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), length < 0 ? LENGTH_TO_END : length);
+        } finally {
+            try {
+                afd.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
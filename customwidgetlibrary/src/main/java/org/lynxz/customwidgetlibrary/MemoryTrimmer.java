@@ -0,0 +1,132 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 内存紧张时的统一裁剪策略
+ * 只向application注册一个 {@link ComponentCallbacks2},把系统的各个trim level归并为以下三档再分发给各组件:
+ * {@link #LEVEL_CACHES}: 释放空闲播放器,预加载的下一个播放器,内存缓存减半
+ * {@link #LEVEL_BACKGROUND}: 另外释放不可见view的播放器及bitmap缓存
+ * {@link #LEVEL_ALL}: 进程随时可能被杀,能释放的都释放
+ * 被释放的资源在下次需要时重新创建,组件自身不需要关心系统的trim level
+ * 监听器以弱引用保存,注册者需自行持有监听器
+ */
+class MemoryTrimmer {
+
+    static final int LEVEL_NONE = 0;
+    static final int LEVEL_CACHES = 1;
+    static final int LEVEL_BACKGROUND = 2;
+    static final int LEVEL_ALL = 3;
+
+    interface Listener {
+        /**
+         * 在主线程中回调
+         *
+         * @param level LEVEL_CACHES / LEVEL_BACKGROUND / LEVEL_ALL
+         */
+        void onTrimMemory(int level);
+    }
+
+    private static volatile MemoryTrimmer sInstance;
+
+    private final Set<Listener> mListeners = Collections.newSetFromMap(new WeakHashMap<Listener, Boolean>());
+    private boolean mInstalled = false;
+
+    static MemoryTrimmer getInstance() {
+        if (sInstance == null) {
+            synchronized (MemoryTrimmer.class) {
+                if (sInstance == null) {
+                    sInstance = new MemoryTrimmer();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private MemoryTrimmer() {
+    }
+
+    /**
+     * 向application注册系统回调,重复调用无影响
+     * 没有context的组件(如 {@link MediaPlayerPool})只需 addListener,由首个attach的view完成注册
+     */
+    void install(Context context) {
+        synchronized (this) {
+            if (mInstalled) {
+                return;
+            }
+            mInstalled = true;
+        }
+        context.getApplicationContext().registerComponentCallbacks(mCallbacks);
+    }
+
+    synchronized void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    synchronized void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 系统trim level到裁剪档位的映射
+     * 前台运行时按系统内存状况递进;UI不可见时只需缩减缓存,进入后台LRU列表后越靠后越容易被杀
+     */
+    static int toTrimLevel(int systemLevel) {
+        switch (systemLevel) {
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE:
+            case ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN:
+                return LEVEL_CACHES;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
+            case ComponentCallbacks2.TRIM_MEMORY_BACKGROUND:
+                return LEVEL_BACKGROUND;
+            case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
+            case ComponentCallbacks2.TRIM_MEMORY_MODERATE:
+            case ComponentCallbacks2.TRIM_MEMORY_COMPLETE:
+                return LEVEL_ALL;
+            default:
+                // 未来新增的level按数值大小归档
+                if (systemLevel >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                    return LEVEL_ALL;
+                }
+                return systemLevel >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ? LEVEL_BACKGROUND : LEVEL_NONE;
+        }
+    }
+
+    private void dispatch(int level) {
+        if (level == LEVEL_NONE) {
+            return;
+        }
+        ArrayList<Listener> listeners;
+        synchronized (this) {
+            listeners = new ArrayList<>(mListeners);
+        }
+        for (Listener listener : listeners) {
+            listener.onTrimMemory(level);
+        }
+    }
+
+    private final ComponentCallbacks2 mCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            dispatch(toTrimLevel(level));
+        }
+
+        @Override
+        public void onLowMemory() {
+            dispatch(LEVEL_ALL);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+}
@@ -0,0 +1,308 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 进程级解码器配额
+ * 低端平板上同时播放多个视频时硬件解码器会被耗尽,mediaPlayer直接报错且错误码不明确
+ * 因此限制同一时刻持有播放器的view数量,超出时按优先级(获得焦点 > 可见 > 不可见)分配:
+ * 低优先级的view记录播放进度后释放播放器(park),有空闲配额时再恢复到原进度(restore)
+ * 释放中的播放器在释放完成前依然占用配额,避免新旧解码器短暂共存
+ * 所有方法都需要在主线程中调用
+ */
+public class PlaybackCoordinator {
+
+    private static final int DEFAULT_MAX_ACTIVE_DECODERS = 3;
+
+    static final int PRIORITY_HIDDEN = 0;
+    static final int PRIORITY_VISIBLE = 1;
+    static final int PRIORITY_FOCUSED = 2;
+
+    private static volatile PlaybackCoordinator sInstance;
+
+    /**
+     * 参与配额分配的播放器持有者,回调都在主线程
+     */
+    interface Client {
+        /**
+         * @return 当前优先级, {@link #PRIORITY_HIDDEN} 等
+         */
+        int getDecoderPriority();
+
+        /**
+         * 配额被更高优先级的view抢占,需记录进度后释放播放器,释放完成后调用 {@link #onReleased(Client)}
+         */
+        void onParkDecoder();
+
+        /**
+         * 重新获得配额,可以恢复播放
+         */
+        void onRestoreDecoder();
+
+        /**
+         * 额外的解码器(如提前prepare的下一个播放器)被收回,需立即释放
+         */
+        void onRevokeExtraDecoder();
+    }
+
+    private static class Entry {
+        final Client client;
+        final long seq;//请求先后顺序,优先级相同时先到先得
+        boolean wants;//是否需要播放器
+        boolean granted;//是否已分配配额
+        boolean holding;//是否仍持有播放器(包括释放中)
+        boolean extra;//是否持有额外的解码器
+        int priority;
+
+        Entry(Client client, long seq) {
+            this.client = client;
+            this.seq = seq;
+        }
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final IdentityHashMap<Client, Entry> mEntries = new IdentityHashMap<>();
+    private final ArrayList<Entry> mSorted = new ArrayList<>();
+    private int mMaxActive = DEFAULT_MAX_ACTIVE_DECODERS;
+    private long mSeq = 0;
+    private boolean mRebalancing = false;
+    private boolean mRebalanceScheduled = false;
+
+    public static PlaybackCoordinator getInstance() {
+        if (sInstance == null) {
+            synchronized (PlaybackCoordinator.class) {
+                if (sInstance == null) {
+                    sInstance = new PlaybackCoordinator();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private PlaybackCoordinator() {
+    }
+
+    /**
+     * 设置同时持有播放器的view数量上限,默认为3
+     */
+    public void setMaxActiveDecoders(int max) {
+        mMaxActive = Math.max(1, max);
+        scheduleRebalance();
+    }
+
+    public int getMaxActiveDecoders() {
+        return mMaxActive;
+    }
+
+    /**
+     * 申请播放器配额
+     *
+     * @return 是否获得配额,未获得时进入等待,有空闲配额后通过 {@link Client#onRestoreDecoder()} 通知
+     */
+    boolean request(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry == null) {
+            entry = new Entry(client, mSeq++);
+            mEntries.put(client, entry);
+        }
+        entry.wants = true;
+        if (!entry.granted && !mRebalancing) {
+            rebalance(entry);
+        }
+        return entry.granted;
+    }
+
+    /**
+     * 不再需要播放器,如surface已销毁,持有的播放器释放完成后配额才会归还
+     */
+    void cancel(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry == null) {
+            return;
+        }
+        entry.wants = false;
+        entry.granted = false;
+        removeIfIdle(entry);
+        scheduleRebalance();
+    }
+
+    /**
+     * 播放器已获得配额并开始使用
+     */
+    void onAcquired(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry != null && entry.granted) {
+            entry.holding = true;
+        }
+    }
+
+    /**
+     * 播放器已释放完成
+     */
+    void onReleased(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry == null) {
+            return;
+        }
+        entry.holding = false;
+        removeIfIdle(entry);
+        scheduleRebalance();
+    }
+
+    /**
+     * 申请一个额外的解码器,只有配额有空闲且没有其他view在等待时才会成功
+     */
+    boolean requestExtra(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry == null || !entry.granted) {
+            return false;
+        }
+        if (entry.extra) {
+            return true;
+        }
+        if (occupied() >= mMaxActive || hasWaiting()) {
+            return false;
+        }
+        entry.extra = true;
+        return true;
+    }
+
+    void releaseExtra(Client client) {
+        Entry entry = mEntries.get(client);
+        if (entry != null && entry.extra) {
+            entry.extra = false;
+            removeIfIdle(entry);
+            scheduleRebalance();
+        }
+    }
+
+    /**
+     * view的可见性或焦点发生变化,稍后重新分配配额
+     */
+    void invalidate() {
+        if (!mEntries.isEmpty()) {
+            scheduleRebalance();
+        }
+    }
+
+    private void removeIfIdle(Entry entry) {
+        if (!entry.wants && !entry.holding && !entry.extra) {
+            mEntries.remove(entry.client);
+        }
+    }
+
+    private void scheduleRebalance() {
+        if (!mRebalanceScheduled) {
+            mRebalanceScheduled = true;
+            mHandler.post(mRebalanceRunnable);
+        }
+    }
+
+    private final Runnable mRebalanceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRebalanceScheduled = false;
+            rebalance(null);
+        }
+    };
+
+    /**
+     * 已分配或仍被占用的配额数
+     */
+    private int occupied() {
+        int count = 0;
+        for (Entry e : mEntries.values()) {
+            if (e.granted || e.holding) {
+                count++;
+            }
+            if (e.extra) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasWaiting() {
+        for (Entry e : mEntries.values()) {
+            if (e.wants && !e.granted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按优先级重新分配配额
+     *
+     * @param requester 正在同步申请的view,获得配额时不再回调 onRestoreDecoder
+     */
+    private void rebalance(Entry requester) {
+        mRebalancing = true;
+        try {
+            mSorted.clear();
+            for (Entry e : mEntries.values()) {
+                if (e.wants) {
+                    e.priority = e.client.getDecoderPriority();
+                    mSorted.add(e);
+                }
+            }
+            Collections.sort(mSorted, PRIORITY_ORDER);
+
+            // 排在配额之外的view让出播放器
+            for (int i = mMaxActive; i < mSorted.size(); i++) {
+                Entry e = mSorted.get(i);
+                if (e.granted) {
+                    e.granted = false;
+                    e.client.onParkDecoder();
+                }
+            }
+
+            // 有view在等待时先收回额外的解码器
+            if (hasWaiting()) {
+                for (int i = mSorted.size() - 1; i >= 0; i--) {
+                    Entry e = mSorted.get(i);
+                    if (e.extra) {
+                        e.extra = false;
+                        e.client.onRevokeExtraDecoder();
+                    }
+                }
+            }
+
+            int occupied = occupied();
+            int limit = Math.min(mMaxActive, mSorted.size());
+            for (int i = 0; i < limit && occupied < mMaxActive; i++) {
+                Entry e = mSorted.get(i);
+                if (e.granted) {
+                    continue;
+                }
+                e.granted = true;
+                if (!e.holding) {
+                    occupied++;
+                }
+                if (e != requester) {
+                    e.client.onRestoreDecoder();
+                }
+            }
+        } finally {
+            mRebalancing = false;
+            mSorted.clear();
+        }
+    }
+
+    private static final Comparator<Entry> PRIORITY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.priority != b.priority) {
+                return a.priority > b.priority ? -1 : 1;
+            }
+            return a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1);
+        }
+    };
+}
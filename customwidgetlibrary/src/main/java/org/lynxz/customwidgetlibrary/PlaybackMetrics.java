@@ -0,0 +1,152 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.os.SystemClock;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放性能统计
+ * 记录加载耗时,首帧耗时,卡顿次数及时长,seek耗时,异步释放耗时等,通过 {@link Listener} 以结构化事件回调
+ * 所有时间均基于 {@link SystemClock#elapsedRealtime()},单位毫秒,不受系统时间修改影响
+ * 所有方法都在主线程中调用,回调也在主线程
+ */
+public class PlaybackMetrics {
+
+    public interface Listener {
+        void onMetricEvent(Event event);
+    }
+
+    public static class Event {
+        public static final int TYPE_PREPARED = 1;//setVideoPath到onPrepared
+        public static final int TYPE_FIRST_FRAME = 2;//setVideoPath到首帧渲染
+        public static final int TYPE_REBUFFER = 3;//播放过程中的一次卡顿,count/totalDurationMs为本视频累计值
+        public static final int TYPE_SEEK = 4;//seekTo到onSeekComplete
+        public static final int TYPE_RELEASE = 5;//releasePlayerAsync到释放完成
+        public static final int TYPE_COMMAND_COALESCED = 6;//被后续指令覆盖而未执行的播放器操作,extra为指令类型
+
+        public final int type;
+        public final String url;
+        public final long timestamp;//事件发生时刻
+        public final long durationMs;
+        public final int count;
+        public final long totalDurationMs;
+        public final int extra;
+
+        Event(int type, String url, long timestamp, long durationMs, int count, long totalDurationMs, int extra) {
+            this.type = type;
+            this.url = url;
+            this.timestamp = timestamp;
+            this.durationMs = durationMs;
+            this.count = count;
+            this.totalDurationMs = totalDurationMs;
+            this.extra = extra;
+        }
+
+        @Override
+        public String toString() {
+            return "Event{type=" + type + ", url=" + url + ", timestamp=" + timestamp
+                    + ", durationMs=" + durationMs + ", count=" + count
+                    + ", totalDurationMs=" + totalDurationMs + ", extra=" + extra + '}';
+        }
+    }
+
+    private Listener mListener;
+    private String mUrl;
+    private long mLoadStartTime = -1;
+    private boolean mFirstFrameReported = false;
+    private long mRebufferStartTime = -1;
+    private int mRebufferCount = 0;
+    private long mRebufferTotalMs = 0;
+    private long mSeekStartTime = -1;
+
+    void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 开始加载新视频,之前的统计清零
+     */
+    void onLoadStart(String url) {
+        mUrl = url;
+        mLoadStartTime = now();
+        mFirstFrameReported = false;
+        mRebufferStartTime = -1;
+        mRebufferCount = 0;
+        mRebufferTotalMs = 0;
+        mSeekStartTime = -1;
+    }
+
+    void onPrepared() {
+        if (mLoadStartTime >= 0) {
+            long now = now();
+            emit(Event.TYPE_PREPARED, now, now - mLoadStartTime, 0, 0, 0);
+        }
+    }
+
+    void onFirstFrame() {
+        if (mLoadStartTime >= 0 && !mFirstFrameReported) {
+            mFirstFrameReported = true;
+            long now = now();
+            emit(Event.TYPE_FIRST_FRAME, now, now - mLoadStartTime, 0, 0, 0);
+        }
+    }
+
+    void onBufferingStart() {
+        if (mRebufferStartTime < 0) {
+            mRebufferStartTime = now();
+        }
+    }
+
+    void onBufferingEnd() {
+        if (mRebufferStartTime < 0) {
+            return;
+        }
+        long now = now();
+        long duration = now - mRebufferStartTime;
+        mRebufferStartTime = -1;
+        mRebufferCount++;
+        mRebufferTotalMs += duration;
+        emit(Event.TYPE_REBUFFER, now, duration, mRebufferCount, mRebufferTotalMs, 0);
+    }
+
+    void onSeekStart() {
+        // 连续seek时以第一次为起点
+        if (mSeekStartTime < 0) {
+            mSeekStartTime = now();
+        }
+    }
+
+    void onSeekComplete() {
+        if (mSeekStartTime < 0) {
+            return;
+        }
+        long now = now();
+        long duration = now - mSeekStartTime;
+        mSeekStartTime = -1;
+        emit(Event.TYPE_SEEK, now, duration, 0, 0, 0);
+    }
+
+    void onReleased(long startTime) {
+        long now = now();
+        emit(Event.TYPE_RELEASE, now, now - startTime, 0, 0, 0);
+    }
+
+    /**
+     * 指令在发起线程中被合并,由调用方post到主线程后再调用
+     *
+     * @param timestamp 指令被合并的时刻
+     */
+    void onCommandCoalesced(int cmdType, long timestamp) {
+        emit(Event.TYPE_COMMAND_COALESCED, timestamp, 0, 0, 0, cmdType);
+    }
+
+    private void emit(int type, long timestamp, long durationMs, int count, long totalMs, int extra) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onMetricEvent(new Event(type, mUrl, timestamp, durationMs, count, totalMs, extra));
+        }
+    }
+
+    static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
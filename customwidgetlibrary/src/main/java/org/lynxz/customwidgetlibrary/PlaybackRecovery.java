@@ -0,0 +1,144 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.media.MediaPlayer;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放出错后的自动恢复策略
+ * 1. 根据 what/extra 区分网络类错误(可重试)和格式类错误(不可重试)
+ * 2. 重试间隔按指数退避,并加入随机抖动,避免同一网络下的大量设备在网络恢复瞬间同时重连
+ * 3. 重试次数用完后才把错误回调给调用者
+ * 非线程安全,只在主线程中使用
+ */
+class PlaybackRecovery {
+
+    static final int DEFAULT_MAX_RETRIES = 5;
+    static final long DEFAULT_BASE_DELAY_MS = 1000;
+    static final long DEFAULT_MAX_DELAY_MS = 30 * 1000;
+
+    // MediaPlayer中未公开的错误码
+    private static final int MEDIA_ERROR_CONNECTION_LOST = -1005;
+    private static final int MEDIA_ERROR_SYSTEM = Integer.MIN_VALUE;
+
+    private int mMaxRetries = DEFAULT_MAX_RETRIES;
+    private long mBaseDelayMs = DEFAULT_BASE_DELAY_MS;
+    private long mMaxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private int mAttempt = 0;
+    private final Random mRandom;
+
+    PlaybackRecovery() {
+        this(new Random());
+    }
+
+    PlaybackRecovery(Random random) {
+        mRandom = random;
+    }
+
+    /**
+     * @param maxRetries 最大连续重试次数,0表示不自动恢复
+     */
+    void setMaxRetries(int maxRetries) {
+        mMaxRetries = Math.max(0, maxRetries);
+    }
+
+    void setDelay(long baseDelayMs, long maxDelayMs) {
+        mBaseDelayMs = Math.max(1, baseDelayMs);
+        mMaxDelayMs = Math.max(mBaseDelayMs, maxDelayMs);
+    }
+
+    boolean hasRetriesLeft() {
+        return mAttempt < mMaxRetries;
+    }
+
+    int getAttempt() {
+        return mAttempt;
+    }
+
+    /**
+     * 恢复成功后重新计数
+     */
+    void reset() {
+        mAttempt = 0;
+    }
+
+    /**
+     * 下一次重试的等待时长,并计入重试次数
+     * 取 [上限/2, 上限] 之间的随机值,上限为 base * 2^attempt 且不超过maxDelay
+     */
+    long nextDelay() {
+        long cap = mBaseDelayMs << Math.min(mAttempt, 20);
+        if (cap <= 0 || cap > mMaxDelayMs) {
+            cap = mMaxDelayMs;
+        }
+        mAttempt++;
+        long half = cap / 2;
+        return half + (long) (mRandom.nextDouble() * (cap - half));
+    }
+
+    /**
+     * 网络恢复后的等待时长,在 [0, base] 内随机分散重连时间
+     */
+    long reconnectDelay() {
+        return (long) (mRandom.nextDouble() * mBaseDelayMs);
+    }
+
+    /**
+     * 播放器错误是否可能通过重新加载恢复
+     */
+    static boolean isRecoverable(int what, int extra) {
+        switch (extra) {
+            case MediaPlayer.MEDIA_ERROR_UNSUPPORTED:
+            case MediaPlayer.MEDIA_ERROR_MALFORMED:
+                return false;
+            case MediaPlayer.MEDIA_ERROR_IO:
+            case MediaPlayer.MEDIA_ERROR_TIMED_OUT:
+            case MEDIA_ERROR_CONNECTION_LOST:
+                return true;
+            default:
+                break;
+        }
+
+        switch (what) {
+            case MediaPlayer.MEDIA_ERROR_SERVER_DIED:
+                // mediaserver进程重启,需要新的播放器
+                return true;
+            case MediaPlayer.MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK:
+                return false;
+            case MediaPlayer.MEDIA_ERROR_UNKNOWN:
+                // 部分机型断网时只给出 (1, MEDIA_ERROR_SYSTEM)
+                return extra == MEDIA_ERROR_SYSTEM;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 播放器错误是否可以重试,网络类错误只有在线视频才重试,本地文件的io错误重新加载也无法恢复
+     *
+     * @param url 在线视频地址,本地文件或自定义数据源时传null
+     */
+    static boolean isRecoverable(int what, int extra, String url) {
+        return isRecoverable(what, extra) && (!isNetworkError(what, extra) || isNetworkUrl(url));
+    }
+
+    private static boolean isNetworkError(int what, int extra) {
+        return extra == MediaPlayer.MEDIA_ERROR_IO || extra == MediaPlayer.MEDIA_ERROR_TIMED_OUT
+                || extra == MEDIA_ERROR_CONNECTION_LOST
+                || (what == MediaPlayer.MEDIA_ERROR_UNKNOWN && extra == MEDIA_ERROR_SYSTEM);
+    }
+
+    /**
+     * 子线程中执行的播放器操作出错时是否可以重试,只有在线视频的io异常可以
+     */
+    static boolean isRecoverable(Throwable error, String url) {
+        return error instanceof IOException && isNetworkUrl(url);
+    }
+
+    static boolean isNetworkUrl(String url) {
+        return url != null && (url.startsWith("http://") || url.startsWith("https://")
+                || url.startsWith("rtsp://"));
+    }
+}
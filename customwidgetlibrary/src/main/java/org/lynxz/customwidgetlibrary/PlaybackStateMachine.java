@@ -0,0 +1,200 @@
+package org.lynxz.customwidgetlibrary;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放器状态机
+ * 状态切换需满足转换表 {@link #TRANSITIONS},并通过CAS原子更新,任意线程读写都是安全的
+ * 每次设置新的视频地址都会生成新的generation,异步操作完成时若generation已过期则直接丢弃结果,
+ * 避免旧视频的回调篡改新视频的状态
+ * generation与状态打包在同一个long中(高32位generation,低32位状态),校验generation与切换状态是同一次CAS
+ */
+class PlaybackStateMachine {
+
+    // all possible internal states
+    static final int STATE_ERROR = -1;
+    static final int STATE_IDLE = 0;//初始状态
+    static final int STATE_PREPARING = 1;
+    static final int STATE_PREPARED = 2;
+    static final int STATE_PLAYING = 3;
+    static final int STATE_PAUSED = 4;
+    static final int STATE_PLAYBACK_COMPLETED = 5;//正常播放结束
+    static final int STATE_RELEASING = 6;//正在异步释放中
+    static final int STATE_STOPED = 7;// 返回桌面,切换页面等
+
+    private static final int STATE_COUNT = 9;
+
+    // TRANSITIONS[from + 1][to + 1] 表示是否允许从from切换到to
+    private static final boolean[][] TRANSITIONS = new boolean[STATE_COUNT][STATE_COUNT];
+
+    static {
+        allow(STATE_IDLE, STATE_IDLE, STATE_PREPARING, STATE_RELEASING, STATE_ERROR);
+        allow(STATE_PREPARING, STATE_PREPARED, STATE_RELEASING, STATE_ERROR);
+        allow(STATE_PREPARED, STATE_PLAYING, STATE_PAUSED, STATE_STOPED, STATE_PLAYBACK_COMPLETED,
+                STATE_RELEASING, STATE_ERROR);
+        allow(STATE_PLAYING, STATE_PLAYING, STATE_PAUSED, STATE_STOPED, STATE_PLAYBACK_COMPLETED,
+                STATE_RELEASING, STATE_ERROR);
+        allow(STATE_PAUSED, STATE_PLAYING, STATE_PAUSED, STATE_STOPED, STATE_PLAYBACK_COMPLETED,
+                STATE_RELEASING, STATE_ERROR);
+        allow(STATE_PLAYBACK_COMPLETED, STATE_PLAYING, STATE_PAUSED, STATE_STOPED,
+                STATE_PLAYBACK_COMPLETED, STATE_RELEASING, STATE_ERROR);
+        allow(STATE_RELEASING, STATE_IDLE, STATE_ERROR);
+        allow(STATE_STOPED, STATE_STOPED, STATE_PREPARING, STATE_RELEASING, STATE_ERROR);
+        allow(STATE_ERROR, STATE_ERROR, STATE_IDLE, STATE_RELEASING);
+
+        // 切换到已提前prepare好的下一个播放器
+        allow(STATE_PREPARED, STATE_PREPARED);
+        allow(STATE_PLAYING, STATE_PREPARED);
+        allow(STATE_PAUSED, STATE_PREPARED);
+        allow(STATE_PLAYBACK_COMPLETED, STATE_PREPARED);
+        allow(STATE_STOPED, STATE_PREPARED);
+        allow(STATE_ERROR, STATE_PREPARED);
+    }
+
+    private static void allow(int from, int... targets) {
+        for (int to : targets) {
+            TRANSITIONS[from + 1][to + 1] = true;
+        }
+    }
+
+    static boolean canTransition(int from, int to) {
+        return TRANSITIONS[from + 1][to + 1];
+    }
+
+    /**
+     * 状态切换回调,在执行切换的线程中调用
+     */
+    interface Listener {
+        void onStateChanged(int from, int to);
+    }
+
+    private volatile Listener mListener;
+
+    void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    private void notifyChanged(int from, int to) {
+        Listener listener = mListener;
+        if (listener != null && from != to) {
+            listener.onStateChanged(from, to);
+        }
+    }
+
+    // mCurrentState is a VideoView object's current state.
+    // mTargetState is the state that a method caller intends to reach.
+    // For instance, regardless the VideoView object's current state,
+    // calling pause() intends to bring the object to a target state
+    // of STATE_PAUSED.
+    private final AtomicLong mCurrentState = new AtomicLong(pack(0, STATE_IDLE));
+    private volatile int mTargetState = STATE_IDLE;
+
+    private static long pack(int generation, int state) {
+        return ((long) generation << 32) | (state & 0xFFFFFFFFL);
+    }
+
+    private static int stateOf(long value) {
+        return (int) value;
+    }
+
+    private static int generationOf(long value) {
+        return (int) (value >>> 32);
+    }
+
+    int getState() {
+        return stateOf(mCurrentState.get());
+    }
+
+    int getTargetState() {
+        return mTargetState;
+    }
+
+    void setTargetState(int targetState) {
+        mTargetState = targetState;
+    }
+
+    /**
+     * 当前状态为expect且转换合法时才切换到update
+     *
+     * @return 是否切换成功
+     */
+    boolean compareAndSet(int expect, int update) {
+        if (!canTransition(expect, update)) {
+            return false;
+        }
+        while (true) {
+            long current = mCurrentState.get();
+            if (stateOf(current) != expect) {
+                return false;
+            }
+            if (mCurrentState.compareAndSet(current, pack(generationOf(current), update))) {
+                notifyChanged(expect, update);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 从当前状态切换到update,转换不合法时返回false
+     */
+    boolean transitionTo(int update) {
+        while (true) {
+            long current = mCurrentState.get();
+            if (!canTransition(stateOf(current), update)) {
+                return false;
+            }
+            if (mCurrentState.compareAndSet(current, pack(generationOf(current), update))) {
+                notifyChanged(stateOf(current), update);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 仅当generation仍是最新时才切换状态,用于处理异步操作的回调
+     */
+    boolean transitionTo(int generation, int update) {
+        while (true) {
+            long current = mCurrentState.get();
+            if (generationOf(current) != generation || !canTransition(stateOf(current), update)) {
+                return false;
+            }
+            if (mCurrentState.compareAndSet(current, pack(generation, update))) {
+                notifyChanged(stateOf(current), update);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 设置新的视频地址时调用,之前发起的异步操作全部失效
+     *
+     * @return 新的generation
+     */
+    int newGeneration() {
+        while (true) {
+            long current = mCurrentState.get();
+            int generation = generationOf(current) + 1;
+            if (mCurrentState.compareAndSet(current, pack(generation, stateOf(current)))) {
+                return generation;
+            }
+        }
+    }
+
+    int getGeneration() {
+        return generationOf(mCurrentState.get());
+    }
+
+    boolean isCurrent(int generation) {
+        return getGeneration() == generation;
+    }
+
+    boolean isInPlaybackState() {
+        int state = getState();
+        return state != STATE_ERROR &&
+                state != STATE_IDLE &&
+                state != STATE_PREPARING &&
+                state != STATE_RELEASING;
+    }
+}
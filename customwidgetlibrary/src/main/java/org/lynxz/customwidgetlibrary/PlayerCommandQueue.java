@@ -0,0 +1,324 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放器({@link PlayerEngine})操作指令队列
+ * start/pause/stop/seekTo/prepare/release 等操作在断网时都可能阻塞而导致anr,
+ * 因此所有操作都按顺序放到子线程中串行执行,执行结果再回调到主线程
+ * 尚未执行的指令若被后续指令覆盖,则直接合并掉,如: pause后紧跟start,只需执行最后的start
+ * 每个videoView持有一个队列,各队列共享线程池,但同一队列内的指令严格串行
+ */
+class PlayerCommandQueue {
+
+    private static final String TAG = "PlayerCommandQueue";
+
+    static final int CMD_PREPARE = 1;//设置数据源(可选)并prepareAsync
+    static final int CMD_START = 2;
+    static final int CMD_PAUSE = 3;
+    static final int CMD_STOP = 4;
+    static final int CMD_SEEK = 5;//精确seek
+    static final int CMD_RELEASE = 6;//stop并释放,MediaPlayerEngine会归还到MediaPlayerPool
+    static final int CMD_SET_NEXT = 7;//setNextMediaPlayer
+    static final int CMD_SET_LOOPING = 8;
+    static final int CMD_SEEK_PREVIEW = 9;//seek到附近的关键帧,用于拖动进度条时预览
+
+    interface Callback {
+        /**
+         * 指令执行结果回调,在主线程中执行
+         *
+         * @param error 执行成功时为null
+         */
+        void onCommandComplete(Command cmd, Throwable error);
+
+        /**
+         * 指令被后续指令覆盖而不再执行,在入队的线程中回调
+         */
+        void onCommandCoalesced(Command cmd);
+    }
+
+    // 所有队列共享的指令线程池
+    static final Executor sExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "player-command-" + mCount.getAndIncrement());
+        }
+    });
+
+    private final LinkedList<Command> mPending = new LinkedList<>();
+    private boolean mDraining = false;
+    private final Callback mCallback;
+    private final Scheduler.Worker mMainWorker;
+    private final Executor mExecutor;
+
+    /**
+     * @param callbackScheduler 执行结果回调所在的线程,通常为主线程,单元测试中可替换
+     * @param executor          执行指令的线程,通常为 {@link #sExecutor},单元测试中可替换为虚拟时间上的实现
+     */
+    PlayerCommandQueue(Callback callback, Scheduler callbackScheduler, Executor executor) {
+        mCallback = callback;
+        mMainWorker = callbackScheduler.createWorker();
+        mExecutor = executor;
+    }
+
+    // 以下方法中的generation参数见 PlaybackStateMachine#newGeneration(),原样回传给Callback
+    // 池化后同一个MediaPlayer对象可能先后播放不同视频,因此不能仅凭player判断回调是否过期
+
+    void prepare(PlayerEngine player, String path, int generation) {
+        enqueue(new Command(CMD_PREPARE, player, 0, path, generation));
+    }
+
+    /**
+     * 以本地数据源prepare,数据源在子线程中打开
+     */
+    void prepareSource(PlayerEngine player, MediaSource source, int generation) {
+        enqueue(new Command(CMD_PREPARE, player, 0, null, generation, null, source));
+    }
+
+    void start(PlayerEngine player, int generation) {
+        enqueue(new Command(CMD_START, player, 0, null, generation));
+    }
+
+    void pause(PlayerEngine player, int generation) {
+        enqueue(new Command(CMD_PAUSE, player, 0, null, generation));
+    }
+
+    void stop(PlayerEngine player, int generation) {
+        enqueue(new Command(CMD_STOP, player, 0, null, generation));
+    }
+
+    void seekTo(PlayerEngine player, int msec, int generation) {
+        enqueue(new Command(CMD_SEEK, player, msec, null, generation));
+    }
+
+    void seekPreview(PlayerEngine player, int msec, int generation) {
+        enqueue(new Command(CMD_SEEK_PREVIEW, player, msec, null, generation));
+    }
+
+    /**
+     * @param next 为null时解除关联
+     */
+    void setNextPlayer(PlayerEngine player, PlayerEngine next, int generation) {
+        enqueue(new Command(CMD_SET_NEXT, player, 0, null, generation, next));
+    }
+
+    void setLooping(PlayerEngine player, boolean looping, int generation) {
+        enqueue(new Command(CMD_SET_LOOPING, player, looping ? 1 : 0, null, generation));
+    }
+
+    /**
+     * @param stopFirst 释放前是否需要先stop
+     */
+    void release(PlayerEngine player, boolean stopFirst, int generation) {
+        enqueue(new Command(CMD_RELEASE, player, stopFirst ? 1 : 0, null, generation));
+    }
+
+    private void enqueue(Command cmd) {
+        if (cmd.player == null) {
+            return;
+        }
+
+        ArrayList<Command> dropped = new ArrayList<>();
+        boolean startDrain;
+        synchronized (mPending) {
+            coalesce(cmd, dropped);
+            mPending.add(cmd);
+            startDrain = !mDraining;
+            mDraining = true;
+        }
+
+        if (mCallback != null) {
+            for (Command old : dropped) {
+                mCallback.onCommandCoalesced(old);
+            }
+        }
+        if (startDrain) {
+            mExecutor.execute(mDrainRunnable);
+        }
+    }
+
+    /**
+     * 移除被新指令覆盖的待执行指令,需持有mPending锁
+     */
+    private void coalesce(Command cmd, ArrayList<Command> dropped) {
+        Iterator<Command> it = mPending.iterator();
+        while (it.hasNext()) {
+            Command old = it.next();
+            if (old.player != cmd.player
+                    || (old.type == CMD_PREPARE && cmd.type != CMD_RELEASE)) {
+                continue;
+            }
+
+            boolean superseded;
+            switch (cmd.type) {
+                case CMD_START:
+                case CMD_PAUSE:
+                    // 以最后一次播放/暂停意图为准
+                    superseded = old.type == CMD_START || old.type == CMD_PAUSE;
+                    break;
+                case CMD_SEEK:
+                case CMD_SEEK_PREVIEW:
+                    superseded = old.type == CMD_SEEK || old.type == CMD_SEEK_PREVIEW;
+                    break;
+                case CMD_SET_NEXT:
+                case CMD_SET_LOOPING:
+                    superseded = old.type == cmd.type;
+                    break;
+                case CMD_STOP:
+                    superseded = old.type != CMD_RELEASE;
+                    break;
+                case CMD_RELEASE:
+                    // 即将释放,其他操作都没有意义了
+                    superseded = true;
+                    break;
+                default:
+                    superseded = false;
+                    break;
+            }
+
+            if (superseded) {
+                if (old.type == CMD_RELEASE) {
+                    // 重复release,保留stop标记
+                    cmd.intArg |= old.intArg;
+                }
+                it.remove();
+                dropped.add(old);
+            }
+        }
+    }
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                Command cmd;
+                synchronized (mPending) {
+                    cmd = mPending.poll();
+                    if (cmd == null) {
+                        mDraining = false;
+                        return;
+                    }
+                }
+
+                Throwable error = null;
+                try {
+                    execute(cmd);
+                } catch (Throwable e) {
+                    Log.e(TAG, "execute cmd " + cmd.type + " error " + e.getMessage());
+                    error = e;
+                }
+                postResult(cmd, error);
+            }
+        }
+    };
+
+    private void execute(Command cmd) throws Exception {
+        PlayerEngine player = cmd.player;
+        switch (cmd.type) {
+            case CMD_PREPARE:
+                if (cmd.source != null) {
+                    player.setDataSource(cmd.source);
+                } else if (cmd.path != null) {
+                    player.setDataSource(cmd.path);
+                }
+                player.prepareAsync();
+                break;
+            case CMD_START:
+                player.start();
+                break;
+            case CMD_PAUSE:
+                if (player.isPlaying()) {
+                    player.pause();
+                }
+                break;
+            case CMD_STOP:
+                player.stop();
+                break;
+            case CMD_SEEK:
+                player.seekTo(cmd.intArg, true);
+                break;
+            case CMD_SEEK_PREVIEW:
+                player.seekTo(cmd.intArg, false);
+                break;
+            case CMD_SET_NEXT:
+                player.setNextEngine(cmd.next);
+                break;
+            case CMD_SET_LOOPING:
+                player.setLooping(cmd.intArg != 0);
+                break;
+            case CMD_RELEASE:
+                if (cmd.intArg != 0) {
+                    try {
+                        player.stop();
+                    } catch (Exception e) {
+                        // stop失败也要继续释放播放器
+                        Log.e(TAG, "release stop error " + e.getMessage());
+                    }
+                }
+                player.release();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void postResult(final Command cmd, final Throwable error) {
+        if (mCallback == null) {
+            return;
+        }
+        mMainWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                mCallback.onCommandComplete(cmd, error);
+            }
+        });
+    }
+
+    static class Command {
+        final int type;
+        final PlayerEngine player;
+        int intArg;
+        final String path;
+        final int generation;
+        final PlayerEngine next;
+        final MediaSource source;
+        final long enqueueTime = SystemClock.elapsedRealtime();//入队时刻,用于统计耗时
+
+        Command(int type, PlayerEngine player, int intArg, String path, int generation) {
+            this(type, player, intArg, path, generation, null);
+        }
+
+        Command(int type, PlayerEngine player, int intArg, String path, int generation, PlayerEngine next) {
+            this(type, player, intArg, path, generation, next, null);
+        }
+
+        Command(int type, PlayerEngine player, int intArg, String path, int generation, PlayerEngine next,
+                MediaSource source) {
+            this.type = type;
+            this.player = player;
+            this.intArg = intArg;
+            this.path = path;
+            this.generation = generation;
+            this.next = next;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.IOException;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放内核抽象, {@link VideoPlayerController} 只通过该接口驱动播放器
+ * 默认实现为 {@link MediaPlayerEngine},单元测试中可替换为不依赖android的实现,
+ * 以便在jvm上验证状态机,异步指令队列及异步释放逻辑
+ * 方法分为两类:
+ * 1. 监听器,surface及状态查询,在主线程中调用,实现不能阻塞
+ * 2. 数据源/prepare/start/pause/stop/seek/release等,只在 {@link PlayerCommandQueue} 的子线程中调用,允许阻塞
+ * 错误码及info取值与 MediaPlayer 的 MEDIA_ERROR_* / MEDIA_INFO_* 一致
+ */
+interface PlayerEngine {
+
+    interface Factory {
+        /**
+         * 创建(或从池中取出)一个idle状态的播放器,在主线程中调用
+         */
+        PlayerEngine create();
+    }
+
+    /**
+     * 播放器回调,与MediaPlayer一样在主线程中执行
+     */
+    interface Listener {
+        void onPrepared(PlayerEngine engine);
+
+        void onCompletion(PlayerEngine engine);
+
+        void onBufferingUpdate(PlayerEngine engine, int percent);
+
+        void onSeekComplete(PlayerEngine engine);
+
+        void onVideoSizeChanged(PlayerEngine engine, int width, int height);
+
+        boolean onError(PlayerEngine engine, int what, int extra);
+
+        boolean onInfo(PlayerEngine engine, int what, int extra);
+    }
+
+    // ---------- 主线程 ----------
+
+    /**
+     * @param listener 为null时清除
+     */
+    void setListener(Listener listener);
+
+    void setDisplay(SurfaceHolder holder);
+
+    void setSurface(Surface surface);
+
+    /**
+     * @param mode MediaPlayer.VIDEO_SCALING_MODE_*
+     */
+    void setVideoScalingMode(int mode);
+
+    int getCurrentPosition();
+
+    int getDuration();
+
+    int getVideoWidth();
+
+    int getVideoHeight();
+
+    boolean isPlaying();
+
+    // ---------- 指令队列子线程,可能阻塞 ----------
+
+    void setDataSource(String path) throws IOException;
+
+    void setDataSource(MediaSource source) throws IOException;
+
+    void prepareAsync();
+
+    void start();
+
+    void pause();
+
+    void stop();
+
+    /**
+     * @param exact true为精确seek,false为seek到附近关键帧
+     */
+    void seekTo(int msec, boolean exact) throws Exception;
+
+    /**
+     * 当前视频播放结束后由内核直接衔接next,为null时解除关联
+     * 内核不支持时忽略,调用方需自行在播放结束后切换
+     */
+    void setNextEngine(PlayerEngine next);
+
+    void setLooping(boolean looping);
+
+    /**
+     * 释放播放器,之后不能再使用;实现可以选择reset后复用底层资源
+     */
+    void release();
+}
@@ -0,0 +1,65 @@
+package org.lynxz.customwidgetlibrary;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : {@link BaseVideoView#events()} 中的播放器事件
+ * 不同类型事件使用的字段:
+ * TYPE_STATE_CHANGED: arg1为原状态,arg2为新状态,取值见 STATE_*
+ * TYPE_BUFFERING_UPDATE: arg1为缓冲百分比
+ * TYPE_BUFFERING_START / TYPE_BUFFERING_END: 无
+ * TYPE_VIDEO_SIZE_CHANGED: arg1为宽,arg2为高
+ * TYPE_ERROR: arg1为what,arg2为extra
+ * TYPE_POSITION: arg1为当前进度,arg2为总时长,单位毫秒
+ * TYPE_METRIC: metric为性能统计事件
+ */
+public class PlayerEvent {
+
+    public static final int TYPE_STATE_CHANGED = 1;
+    public static final int TYPE_BUFFERING_UPDATE = 2;
+    public static final int TYPE_BUFFERING_START = 3;
+    public static final int TYPE_BUFFERING_END = 4;
+    public static final int TYPE_VIDEO_SIZE_CHANGED = 5;
+    public static final int TYPE_ERROR = 6;
+    public static final int TYPE_POSITION = 7;
+    public static final int TYPE_METRIC = 8;
+
+    // 播放状态,与TYPE_STATE_CHANGED的arg1/arg2对应
+    public static final int STATE_ERROR = PlaybackStateMachine.STATE_ERROR;
+    public static final int STATE_IDLE = PlaybackStateMachine.STATE_IDLE;
+    public static final int STATE_PREPARING = PlaybackStateMachine.STATE_PREPARING;
+    public static final int STATE_PREPARED = PlaybackStateMachine.STATE_PREPARED;
+    public static final int STATE_PLAYING = PlaybackStateMachine.STATE_PLAYING;
+    public static final int STATE_PAUSED = PlaybackStateMachine.STATE_PAUSED;
+    public static final int STATE_PLAYBACK_COMPLETED = PlaybackStateMachine.STATE_PLAYBACK_COMPLETED;
+    public static final int STATE_RELEASING = PlaybackStateMachine.STATE_RELEASING;
+    public static final int STATE_STOPED = PlaybackStateMachine.STATE_STOPED;
+
+    public final int type;
+    public final int arg1;
+    public final int arg2;
+    public final PlaybackMetrics.Event metric;
+
+    PlayerEvent(int type, int arg1, int arg2) {
+        this(type, arg1, arg2, null);
+    }
+
+    PlayerEvent(int type, int arg1, int arg2, PlaybackMetrics.Event metric) {
+        this.type = type;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.metric = metric;
+    }
+
+    /**
+     * 高频事件,在事件流中会被限流,只保留每个周期内的最后一个
+     */
+    boolean isHighFrequency() {
+        return type == TYPE_BUFFERING_UPDATE || type == TYPE_POSITION;
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerEvent{type=" + type + ", arg1=" + arg1 + ", arg2=" + arg2
+                + (metric != null ? ", metric=" + metric : "") + '}';
+    }
+}
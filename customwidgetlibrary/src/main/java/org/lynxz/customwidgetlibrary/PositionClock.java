@@ -0,0 +1,58 @@
+package org.lynxz.customwidgetlibrary;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放进度时钟
+ * mediaPlayer.getCurrentPosition() 每次都是同步的native调用,进度条/字幕每帧读取时开销较大
+ * 因此只在播放状态变化(开始,暂停,seek,卡顿)时及播放中低频读取一次真实进度作为锚点,
+ * 其余时间根据 elapsedRealtime 推算
+ * 读取可在任意线程,锚点只在主线程更新
+ */
+class PositionClock {
+
+    private long mAnchorPosition = 0;
+    private long mAnchorTime = 0;
+    private boolean mRunning = false;
+    private long mDuration = -1;
+
+    synchronized void reset() {
+        mAnchorPosition = 0;
+        mAnchorTime = 0;
+        mRunning = false;
+        mDuration = -1;
+    }
+
+    synchronized void setDuration(long duration) {
+        mDuration = duration;
+    }
+
+    synchronized long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * 以真实进度重新校准
+     *
+     * @param running 之后是否按时间流逝推算进度
+     */
+    synchronized void anchor(long position, long now, boolean running) {
+        mAnchorPosition = position;
+        mAnchorTime = now;
+        mRunning = running;
+    }
+
+    synchronized boolean isRunning() {
+        return mRunning;
+    }
+
+    synchronized long getPosition(long now) {
+        long position = mAnchorPosition;
+        if (mRunning && now > mAnchorTime) {
+            position += now - mAnchorTime;
+        }
+        if (mDuration > 0 && position > mDuration) {
+            position = mDuration;
+        }
+        return position;
+    }
+}
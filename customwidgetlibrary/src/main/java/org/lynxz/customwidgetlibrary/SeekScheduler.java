@@ -0,0 +1,85 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.os.SystemClock;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : seek合并调度
+ * 拖动进度条时会连续触发大量seekTo,每次native seek的代价都很高
+ * 因此同一时刻只执行一个seek,执行期间的新请求只保留最后一个,收到onSeekComplete后再执行
+ * 拖动过程中可使用预览模式(只seek到关键帧,速度快),松手后再精确seek
+ * 只在主线程中使用
+ */
+class SeekScheduler {
+
+    // 部分机型seek出错时不会回调onSeekComplete,超时后不再等待
+    // seek指令也可能在队列中被stop/release合并掉,调用方需在超时后调用 onSeekComplete()
+    static final long SEEK_TIMEOUT_MS = 3000;
+
+    interface Executor {
+        /**
+         * 执行seek
+         *
+         * @param preview true表示只需seek到附近的关键帧
+         * @return 播放器已不可用时返回false
+         */
+        boolean executeSeek(int msec, boolean preview);
+    }
+
+    private final Executor mExecutor;
+    private boolean mInFlight = false;
+    private long mIssueTime;
+    private int mInFlightMsec;
+    private int mPendingMsec = -1;
+    private boolean mPendingPreview;
+
+    SeekScheduler(Executor executor) {
+        mExecutor = executor;
+    }
+
+    void seekTo(int msec, boolean preview) {
+        if (mInFlight && SystemClock.elapsedRealtime() - mIssueTime < SEEK_TIMEOUT_MS) {
+            mPendingMsec = msec;
+            mPendingPreview = preview;
+            return;
+        }
+        issue(msec, preview);
+    }
+
+    /**
+     * 上一次seek已完成,执行等待中的最新请求
+     */
+    void onSeekComplete() {
+        mInFlight = false;
+        if (mPendingMsec >= 0) {
+            int msec = mPendingMsec;
+            mPendingMsec = -1;
+            issue(msec, mPendingPreview);
+        }
+    }
+
+    /**
+     * 播放器切换或释放时调用,丢弃所有请求
+     */
+    void reset() {
+        mInFlight = false;
+        mPendingMsec = -1;
+    }
+
+    boolean isSeeking() {
+        return mInFlight || mPendingMsec >= 0;
+    }
+
+    /**
+     * 最近一次请求的位置,seek期间用于代替播放器的当前进度,避免进度条回跳
+     */
+    int getTargetPosition() {
+        return mPendingMsec >= 0 ? mPendingMsec : mInFlightMsec;
+    }
+
+    private void issue(int msec, boolean preview) {
+        mInFlight = mExecutor.executeSeek(msec, preview);
+        mInFlightMsec = msec;
+        mIssueTime = SystemClock.elapsedRealtime();
+    }
+}
@@ -0,0 +1,288 @@
+package org.lynxz.customwidgetlibrary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 视频分段磁盘缓存
+ * 每个视频按 {@link #SEGMENT_SIZE} 切分成若干段,每段一个文件,只有完整写入的段才会被使用
+ * 目录结构: cacheDir/md5(url)/meta 记录视频总长度, cacheDir/md5(url)/{index}.seg 为分段数据
+ * 所有分段按LRU排序,总大小超出限制时淘汰最久未使用的分段
+ */
+class SegmentCache {
+
+    static final int SEGMENT_SIZE = 256 * 1024;
+
+    private static final String META_FILE = "meta";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File mCacheDir;
+    private final long mMaxBytes;
+    private long mTotalBytes = 0;
+    // 所有分段文件,按访问顺序排列
+    private final LinkedHashMap<File, Long> mLruSegments = new LinkedHashMap<>(64, 0.75f, true);
+
+    SegmentCache(File cacheDir, long maxBytes) {
+        mCacheDir = cacheDir;
+        mMaxBytes = maxBytes;
+        if (!mCacheDir.exists()) {
+            mCacheDir.mkdirs();
+        }
+        loadIndex();
+    }
+
+    /**
+     * 启动时扫描已有分段,按最后修改时间恢复LRU顺序
+     */
+    private void loadIndex() {
+        List<File> segments = new ArrayList<>();
+        File[] dirs = mCacheDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File f : files) {
+                if (f.getName().endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(f);
+                } else if (f.getName().endsWith(TMP_SUFFIX)) {
+                    // 上次未写完的分段
+                    f.delete();
+                }
+            }
+        }
+
+        File[] sorted = segments.toArray(new File[segments.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        synchronized (this) {
+            for (File f : sorted) {
+                long len = f.length();
+                mLruSegments.put(f, len);
+                mTotalBytes += len;
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * 获取视频总长度,未知时返回-1
+     */
+    long getContentLength(String url) {
+        File meta = new File(dirOf(url), META_FILE);
+        if (!meta.exists()) {
+            return -1;
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(meta, "r");
+            return raf.readLong();
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    void putContentLength(String url, long length) {
+        File dir = dirOf(url);
+        dir.mkdirs();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(new File(dir, META_FILE), "rw");
+            raf.setLength(0);
+            raf.writeLong(length);
+        } catch (IOException e) {
+            // meta写入失败仅影响缓存命中
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    /**
+     * 指定分段是否已完整缓存
+     */
+    synchronized boolean hasSegment(String url, int index) {
+        return mLruSegments.containsKey(segmentFile(url, index));
+    }
+
+    /**
+     * 视频是否已完整缓存
+     */
+    boolean isFullyCached(String url) {
+        long length = getContentLength(url);
+        if (length <= 0) {
+            return false;
+        }
+        int count = segmentCount(length);
+        for (int i = 0; i < count; i++) {
+            if (!hasSegment(url, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int segmentCount(long contentLength) {
+        return (int) ((contentLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    }
+
+    /**
+     * 以内存映射方式读取分段,不存在时返回null
+     */
+    MappedByteBuffer readSegment(String url, int index) {
+        File f = segmentFile(url, index);
+        synchronized (this) {
+            if (mLruSegments.get(f) == null) {
+                return null;
+            }
+        }
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(f);
+            FileChannel channel = in.getChannel();
+            // 映射建立后即可关闭channel
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            f.setLastModified(System.currentTimeMillis());
+            return buffer;
+        } catch (IOException e) {
+            // 文件被外部删除等
+            synchronized (this) {
+                Long len = mLruSegments.remove(f);
+                if (len != null) {
+                    mTotalBytes -= len;
+                }
+            }
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 写入完整分段,先写临时文件再重命名,保证读到的分段一定是完整的
+     */
+    void writeSegment(String url, int index, ByteBuffer data) {
+        File dir = dirOf(url);
+        dir.mkdirs();
+        File target = segmentFile(url, index);
+        File tmp = new File(dir, index + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            FileChannel channel = out.getChannel();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            closeQuietly(out);
+            tmp.delete();
+            return;
+        } finally {
+            closeQuietly(out);
+        }
+
+        synchronized (this) {
+            Long old = mLruSegments.remove(target);
+            if (old != null) {
+                mTotalBytes -= old;
+            }
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+                return;
+            }
+            long len = target.length();
+            mLruSegments.put(target, len);
+            mTotalBytes += len;
+        }
+        trimToSize();
+    }
+
+    synchronized long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * 淘汰最久未使用的分段,直到总大小不超过限制
+     */
+    void trimToSize() {
+        List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<File, Long>> it = mLruSegments.entrySet().iterator();
+            while (mTotalBytes > mMaxBytes && it.hasNext()) {
+                Map.Entry<File, Long> entry = it.next();
+                mTotalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                it.remove();
+            }
+        }
+
+        for (File f : evicted) {
+            f.delete();
+        }
+    }
+
+    private File dirOf(String url) {
+        return new File(mCacheDir, md5(url));
+    }
+
+    private File segmentFile(String url, int index) {
+        return new File(dirOf(url), index + SEGMENT_SUFFIX);
+    }
+
+    static String md5(String str) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(str.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return String.valueOf(str.hashCode());
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+}
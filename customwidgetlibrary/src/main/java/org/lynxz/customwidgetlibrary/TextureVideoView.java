@@ -0,0 +1,417 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import java.io.FileDescriptor;
+import java.util.List;
+
+import rx.Observable;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 基于TextureView的视频播放控件,适用于RecyclerView等列表中的视频流
+ * 与 {@link BaseVideoView} 共用 {@link VideoPlayerController},状态机,异步指令及异步释放逻辑完全相同,各方法说明见BaseVideoView
+ * 区别在于view从窗口移除(列表回收)时不销毁SurfaceTexture,重新attach时直接复用,
+ * 播放器始终关联在同一个Surface上,滑动时无需重建surface和重新prepare;重新bind时只需设置新的视频地址
+ * 4.1以下系统无法复用SurfaceTexture,移除时与BaseVideoView一样释放播放器
+ * 移除后暂停播放,超过 {@link #setRetainPlayerOnSurfaceLoss(long)} 设置的时长(默认5秒)仍未重新attach时,
+ * 自动释放播放器及SurfaceTexture,重新attach后从原进度重新加载
+ * 需要开启硬件加速,view不再使用时可调用 {@link #release()} 立即释放
+ */
+public class TextureVideoView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private VideoPlayerController mController;
+    private final int[] mMeasuredSize = new int[2];
+
+    // 在多次attach之间复用的SurfaceTexture,以及播放器输出到的Surface
+    private SurfaceTexture mSurfaceTexture;
+    private Surface mSurface;
+    private boolean mAttached = false;
+    private final Matrix mTransform = new Matrix();
+
+    public TextureVideoView(Context context) {
+        this(context, null);
+    }
+
+    public TextureVideoView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public TextureVideoView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        initView();
+    }
+
+    private void initView() {
+        setSurfaceTextureListener(this);
+        mController = new VideoPlayerController(this, new VideoPlayerController.RenderTarget() {
+            @Override
+            public void attach(PlayerEngine player) {
+                player.setSurface(mSurface);
+            }
+
+            @Override
+            public void detach(PlayerEngine player) {
+                player.setSurface(null);
+            }
+
+            @Override
+            public void applyScaleMode(PlayerEngine player, int scaleMode, int videoWidth, int videoHeight) {
+                // TextureView的缓冲区尺寸由mediaPlayer设置,画面默认拉伸到view大小,只需调整变换矩阵
+                updateTransform(getWidth(), getHeight());
+            }
+
+            @Override
+            public void onVideoChanged(String path) {
+            }
+
+            @Override
+            public void onFirstFrame() {
+            }
+
+            @Override
+            public void releaseRetainedSurface() {
+                if (!mAttached && mSurfaceTexture != null) {
+                    SurfaceTexture texture = mSurfaceTexture;
+                    releaseSurface();
+                    texture.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * 可见面积超过一半时自动播放,离开屏幕(包括被列表回收)时自动暂停
+     * 不可见时设置的视频会提前prepare,可见时直接开始播放;调用者主动 {@link #pause()} 的视频不会自动播放
+     */
+    public void setAutoPlayOnVisible(boolean enabled) {
+        mController.setAutoPlayOnVisible(enabled);
+    }
+
+    /**
+     * 设置缩放模式,取值见 {@link BaseVideoView#SCALE_FIT} 等
+     */
+    public void setScaleMode(int scaleMode) {
+        mController.setScaleMode(scaleMode);
+    }
+
+    public int getScaleMode() {
+        return mController.getScaleMode();
+    }
+
+    /**
+     * view从窗口移除后保留播放器及SurfaceTexture的时长,超时后释放,0表示使用默认的5秒
+     */
+    public void setRetainPlayerOnSurfaceLoss(long graceMs) {
+        mController.setRetainPlayerOnSurfaceLoss(graceMs);
+    }
+
+    /**
+     * 停止播放并异步释放播放器,view已从窗口移除时同时释放保留的SurfaceTexture
+     * 之后仍可重新设置视频地址
+     */
+    public void release() {
+        mController.release();
+        if (!mAttached && mSurfaceTexture != null) {
+            SurfaceTexture texture = mSurfaceTexture;
+            releaseSurface();
+            texture.release();
+        }
+    }
+
+    public Observable<PlayerEvent> events() {
+        return mController.events();
+    }
+
+    public void setEventThrottle(long throttleMs) {
+        mController.setEventThrottle(throttleMs);
+    }
+
+    public void setVideoURI(Uri uri) {
+        mController.setVideoURI(uri);
+    }
+
+    public void setVideoFileDescriptor(FileDescriptor fd) {
+        mController.setVideoFileDescriptor(fd);
+    }
+
+    public void setVideoFileDescriptor(FileDescriptor fd, long offset, long length) {
+        mController.setVideoFileDescriptor(fd, offset, length);
+    }
+
+    public void setVideoAssetFileDescriptor(AssetFileDescriptor afd) {
+        mController.setVideoAssetFileDescriptor(afd);
+    }
+
+    public void setVideoAsset(String assetName) {
+        mController.setVideoAsset(assetName);
+    }
+
+    public String getVideoPath() {
+        return mController.getVideoPath();
+    }
+
+    public void setVideoPath(String path) {
+        mController.setVideoPath(path);
+    }
+
+    public void setCacheProxy(VideoCacheProxy proxy) {
+        mController.setCacheProxy(proxy);
+    }
+
+    public void setAutoRecoveryRetries(int maxRetries) {
+        mController.setAutoRecoveryRetries(maxRetries);
+    }
+
+    public void setAutoRecoveryDelay(long baseDelayMs, long maxDelayMs) {
+        mController.setAutoRecoveryDelay(baseDelayMs, maxDelayMs);
+    }
+
+    public void setStartPolicy(long minBufferedMs, float rateFactor, long maxWaitMs) {
+        mController.setStartPolicy(minBufferedMs, rateFactor, maxWaitMs);
+    }
+
+    public float getDownloadSpeedRatio() {
+        return mController.getDownloadSpeedRatio();
+    }
+
+    public boolean isDecoderParked() {
+        return mController.isDecoderParked();
+    }
+
+    public void setPlaybackMetricsListener(PlaybackMetrics.Listener listener) {
+        mController.setPlaybackMetricsListener(listener);
+    }
+
+    public void setPlaylist(List<String> urls, int startIndex) {
+        mController.setPlaylist(urls, startIndex);
+    }
+
+    public List<String> getPlaylist() {
+        return mController.getPlaylist();
+    }
+
+    public int getPlaylistIndex() {
+        return mController.getPlaylistIndex();
+    }
+
+    public boolean playNext() {
+        return mController.playNext();
+    }
+
+    public void setGaplessPlaybackEnabled(boolean enabled) {
+        mController.setGaplessPlaybackEnabled(enabled);
+    }
+
+    public void setLoopPlaylist(boolean loop) {
+        mController.setLoopPlaylist(loop);
+    }
+
+    public void prefetch(List<String> urls) {
+        mController.prefetch(urls);
+    }
+
+    public void setPrefetchCount(int count) {
+        mController.setPrefetchCount(count);
+    }
+
+    public void setPrefetchBytes(long bytes) {
+        mController.setPrefetchBytes(bytes);
+    }
+
+    public void setPrefetchMaxBytesPerSecond(long bytesPerSecond) {
+        mController.setPrefetchMaxBytesPerSecond(bytesPerSecond);
+    }
+
+    public void setPrepareNextEnabled(boolean enabled) {
+        mController.setPrepareNextEnabled(enabled);
+    }
+
+    public void seekTo(int msec) {
+        mController.seekTo(msec);
+    }
+
+    public void seekPreview(int msec) {
+        mController.seekPreview(msec);
+    }
+
+    public void start() {
+        mController.start();
+    }
+
+    public void pause() {
+        mController.pause();
+    }
+
+    public void stopPlayback() {
+        mController.stopPlayback();
+    }
+
+    public int getCurrentPosition() {
+        return mController.getCurrentPosition();
+    }
+
+    public void setOnPositionUpdateListener(BaseVideoView.OnPositionUpdateListener l) {
+        mController.setOnPositionUpdateListener(l);
+    }
+
+    public int getDuration() {
+        return mController.getDuration();
+    }
+
+    public int getBufferPercentage() {
+        return mController.getBufferPercentage();
+    }
+
+    public boolean isPlaying() {
+        return mController.isPlaying();
+    }
+
+    public boolean canPause() {
+        return mController.canPause();
+    }
+
+    public void setOnPreparedListener(MediaPlayer.OnPreparedListener l) {
+        mController.setOnPreparedListener(l);
+    }
+
+    public void setOnErrorListener(MediaPlayer.OnErrorListener l) {
+        mController.setOnErrorListener(l);
+    }
+
+    public void setOnCompletionListener(MediaPlayer.OnCompletionListener l) {
+        mController.setOnCompletionListener(l);
+    }
+
+    /**
+     * 4.1起才支持 {@link #setSurfaceTexture(SurfaceTexture)}
+     */
+    private static boolean canReuseSurfaceTexture() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        if (surface == mSurfaceTexture) {
+            return;
+        }
+        if (mSurfaceTexture != null) {
+            // 保留的SurfaceTexture未能复用,换用新的,播放器在onSurfaceCreated中重新加载
+            mSurface.release();
+            mSurfaceTexture.release();
+        }
+        mSurfaceTexture = surface;
+        mSurface = new Surface(surface);
+        mController.onSurfaceCreated();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        if (surface == mSurfaceTexture && canReuseSurfaceTexture()) {
+            // 返回false由自己持有,播放器继续关联在该surface上,重新attach时复用
+            return false;
+        }
+        if (surface == mSurfaceTexture) {
+            releaseSurface();
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    /**
+     * 解除播放器与surface的关联并释放Surface,SurfaceTexture由调用者处理
+     */
+    private void releaseSurface() {
+        mController.onSurfaceDestroyed();
+        mSurfaceTexture = null;
+        if (mSurface != null) {
+            mSurface.release();
+            mSurface = null;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mSurfaceTexture != null && getSurfaceTexture() != mSurfaceTexture) {
+            setSurfaceTexture(mSurfaceTexture);
+        }
+        mController.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        mController.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        // 构造过程中也可能回调
+        if (mController != null) {
+            mController.onVisibilityChanged();
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mController.onVisibilityChanged();
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        mController.onVisibilityChanged();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateTransform(w, h);
+    }
+
+    /**
+     * SCALE_CROP/SCALE_FILL时画面按比例放大到覆盖整个view再居中裁剪,其他模式下view已按需要的比例测量,直接拉伸即可
+     */
+    private void updateTransform(int width, int height) {
+        int scaleMode = mController.getScaleMode();
+        int videoWidth = mController.getVideoWidth();
+        int videoHeight = mController.getVideoHeight();
+        if ((scaleMode == BaseVideoView.SCALE_CROP || scaleMode == BaseVideoView.SCALE_FILL)
+                && width > 0 && height > 0 && videoWidth > 0 && videoHeight > 0) {
+            float scale = Math.max((float) width / videoWidth, (float) height / videoHeight);
+            mTransform.setScale(videoWidth * scale / width, videoHeight * scale / height, width / 2f, height / 2f);
+        } else {
+            mTransform.reset();
+        }
+        setTransform(mTransform);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mController.measure(widthMeasureSpec, heightMeasureSpec, mMeasuredSize);
+        setMeasuredDimension(mMeasuredSize[0], mMeasuredSize[1]);
+    }
+}
@@ -0,0 +1,479 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 本地视频缓存代理
+ * 在127.0.0.1上启动http服务, mediaPlayer通过 {@link #getProxyUrl(String)} 返回的地址访问视频,
+ * 代理优先从 {@link SegmentCache} 中读取已缓存分段,缺失部分再从源地址下载,同时写入缓存
+ * 支持Range请求,因此seekTo也能命中缓存;视频完整缓存后断网也可播放
+ * 代理地址中带有进程内随机生成的token,不带token的请求直接拒绝,避免被本机其他应用当作转发服务使用
+ * 使用方式:
+ * <pre>
+ * VideoCacheProxy proxy = new VideoCacheProxy(new File(context.getCacheDir(), "video"), 200 * 1024 * 1024);
+ * proxy.start();
+ * videoView.setCacheProxy(proxy);
+ * </pre>
+ */
+public class VideoCacheProxy {
+
+    private static final String TAG = "VideoCacheProxy";
+    private static final String HOST = "127.0.0.1";
+    private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+    private static final int READ_TIMEOUT_MS = 15 * 1000;
+
+    private final SegmentCache mCache;
+    private final String mToken = newToken();
+    private ServerSocket mServerSocket;
+    private int mPort;
+    private volatile boolean mRunning = false;
+    private ExecutorService mExecutor;
+
+    /**
+     * @param cacheDir      缓存目录
+     * @param maxCacheBytes 缓存总大小上限
+     */
+    public VideoCacheProxy(File cacheDir, long maxCacheBytes) {
+        mCache = new SegmentCache(cacheDir, maxCacheBytes);
+    }
+
+    /**
+     * 启动代理服务,重复调用无影响,{@link #shutdown()} 之后可以重新启动
+     */
+    public synchronized void start() throws IOException {
+        if (mRunning) {
+            return;
+        }
+        final ServerSocket serverSocket = new ServerSocket(0, 8, InetAddress.getByName(HOST));
+        // shutdown时线程池已关闭,每次启动都使用新的线程池
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        mServerSocket = serverSocket;
+        mExecutor = executor;
+        mPort = serverSocket.getLocalPort();
+        mRunning = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(serverSocket, executor);
+            }
+        });
+    }
+
+    public synchronized void shutdown() {
+        mRunning = false;
+        if (mServerSocket != null) {
+            try {
+                mServerSocket.close();
+            } catch (IOException ignore) {
+            }
+            mServerSocket = null;
+        }
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * 获取代理后的地址,代理未启动或非http地址时原样返回
+     */
+    public String getProxyUrl(String url) {
+        if (!mRunning || url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return url;
+        }
+        try {
+            return "http://" + HOST + ":" + mPort + "/" + mToken + "/" + URLEncoder.encode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return url;
+        }
+    }
+
+    /**
+     * 视频是否已完整缓存到本地
+     */
+    public boolean isCached(String url) {
+        return mCache.isFullyCached(url);
+    }
+
+    SegmentCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * 只使用本次启动的socket和线程池,shutdown后立即重新start时旧的循环也能正常退出
+     */
+    private void acceptLoop(ServerSocket serverSocket, ExecutorService executor) {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            handle(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 已shutdown,线程池不再接受任务
+                    socket.close();
+                    return;
+                }
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Log.e(TAG, "accept error " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            Request request = Request.read(socket.getInputStream());
+            if (request == null) {
+                return;
+            }
+            serve(request, socket.getOutputStream());
+        } catch (SocketException e) {
+            // mediaPlayer seek时会主动断开旧连接,属于正常情况
+        } catch (IOException e) {
+            Log.e(TAG, "handle error " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private void serve(Request request, OutputStream out) throws IOException {
+        if (!mToken.equals(request.token)) {
+            writeStatus(out, "403 Forbidden", 0);
+            return;
+        }
+        String url = request.url;
+        HttpURLConnection conn = null;
+        int connIndex = -1;
+        try {
+            long length = mCache.getContentLength(url);
+            if (length < 0) {
+                // 长度未知时直接打开需要下载的第一个分段,从响应头中获取总长度,同一个连接继续用于输出
+                connIndex = (int) (Math.max(0, request.rangeStart) / SegmentCache.SEGMENT_SIZE);
+                conn = openConnection(url, (long) connIndex * SegmentCache.SEGMENT_SIZE);
+                length = readContentLength(conn);
+                if (length < 0) {
+                    writeStatus(out, "502 Bad Gateway", 0);
+                    return;
+                }
+                mCache.putContentLength(url, length);
+            }
+
+            long start;
+            long end;//包含
+            if (!request.hasRange) {
+                start = 0;
+                end = length - 1;
+            } else if (request.rangeStart < 0) {
+                // bytes=-N 表示最后N个字节
+                start = Math.max(0, length - request.rangeEnd);
+                end = length - 1;
+            } else {
+                start = request.rangeStart;
+                end = request.rangeEnd < 0 ? length - 1 : Math.min(request.rangeEnd, length - 1);
+            }
+            if (request.hasRange && (start >= length || start > end)) {
+                String resp = "HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + length
+                        + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+                out.write(resp.getBytes("UTF-8"));
+                out.flush();
+                return;
+            }
+
+            StringBuilder header = new StringBuilder();
+            if (request.hasRange) {
+                header.append("HTTP/1.1 206 Partial Content\r\n");
+                header.append("Content-Range: bytes ").append(start).append('-')
+                        .append(end).append('/').append(length).append("\r\n");
+            } else {
+                header.append("HTTP/1.1 200 OK\r\n");
+            }
+            header.append("Accept-Ranges: bytes\r\n");
+            header.append("Content-Length: ").append(end + 1 - start).append("\r\n");
+            header.append("Connection: close\r\n\r\n");
+            out.write(header.toString().getBytes("UTF-8"));
+
+            if (conn != null && connIndex != start / SegmentCache.SEGMENT_SIZE) {
+                // bytes=-N 时打开连接前不知道起始分段
+                conn.disconnect();
+                conn = null;
+            }
+            if (!request.isHead) {
+                writeBody(url, start, end + 1, length, conn, out);
+                conn = null;
+            }
+            out.flush();
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 输出[start, outEnd)范围的数据,已缓存分段直接读取,未缓存的从源地址下载并写入缓存
+     *
+     * @param conn 已打开的源站连接,起始位置为start所在分段,可为null,由本方法关闭
+     */
+    private void writeBody(String url, long start, long outEnd, long length, HttpURLConnection conn,
+                           OutputStream out) throws IOException {
+        long pos = start;
+        byte[] buf = new byte[16 * 1024];
+        try {
+            while (pos < outEnd) {
+                int index = (int) (pos / SegmentCache.SEGMENT_SIZE);
+                MappedByteBuffer segment = conn == null ? mCache.readSegment(url, index) : null;
+                if (segment != null) {
+                    long segStart = (long) index * SegmentCache.SEGMENT_SIZE;
+                    segment.position((int) (pos - segStart));
+                    segment.limit((int) Math.min(segment.limit(), outEnd - segStart));
+                    while (segment.hasRemaining()) {
+                        int n = Math.min(buf.length, segment.remaining());
+                        segment.get(buf, 0, n);
+                        out.write(buf, 0, n);
+                        pos += n;
+                    }
+                } else {
+                    HttpURLConnection c = conn;
+                    conn = null;
+                    pos = downloadFrom(url, index, pos, outEnd, length, c, out);
+                }
+            }
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 从第index个分段的起始位置开始下载,直到遇到已缓存的分段,或者outEnd所在分段下载完成
+     *
+     * @param pos    需要输出给播放器的起始位置
+     * @param outEnd 需要输出给播放器的结束位置(不包含)
+     * @param conn   已打开的连接,为null时新建
+     * @return 下载结束时的位置
+     */
+    private long downloadFrom(String url, int index, long pos, long outEnd, long length,
+                              HttpURLConnection conn, OutputStream out) throws IOException {
+        long segStart = (long) index * SegmentCache.SEGMENT_SIZE;
+        if (conn == null) {
+            conn = openConnection(url, segStart);
+        }
+        InputStream in = null;
+        try {
+            int code = conn.getResponseCode();
+            in = conn.getInputStream();
+            if (code == HttpURLConnection.HTTP_OK && segStart > 0) {
+                // 源站不支持Range,跳过前面的数据
+                skipFully(in, segStart);
+            } else if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("origin response " + code);
+            }
+
+            ByteBuffer segment = ByteBuffer.allocate(SegmentCache.SEGMENT_SIZE);
+            long cursor = segStart;
+            byte[] buf = new byte[16 * 1024];
+            while (cursor < length) {
+                int want = (int) Math.min(buf.length, Math.min(segment.remaining(), length - cursor));
+                int n = in.read(buf, 0, want);
+                if (n < 0) {
+                    throw new IOException("origin closed at " + cursor);
+                }
+                segment.put(buf, 0, n);
+                long chunkStart = cursor;
+                cursor += n;
+
+                // 分段补齐时先写入缓存再输出,播放器读完数据时对应分段已经可用
+                boolean segmentDone = !segment.hasRemaining() || cursor == length;
+                if (segmentDone) {
+                    segment.flip();
+                    if (!mCache.hasSegment(url, index)) {
+                        mCache.writeSegment(url, index, segment);
+                    }
+                    segment.clear();
+                    index++;
+                }
+
+                // 只输出播放器请求范围内的数据
+                long outStart = Math.max(chunkStart, pos);
+                long end = Math.min(cursor, outEnd);
+                if (end > outStart) {
+                    out.write(buf, (int) (outStart - chunkStart), (int) (end - outStart));
+                }
+
+                if (segmentDone) {
+                    if (cursor >= outEnd) {
+                        // 请求范围已输出完,当前分段已补齐
+                        return cursor;
+                    }
+                    if (cursor < length && mCache.hasSegment(url, index)) {
+                        // 后续分段已缓存,切回本地读取
+                        return cursor;
+                    }
+                }
+            }
+            return cursor;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+            }
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * 从Range请求的响应头中获取视频总长度,失败时返回-1
+     */
+    private static long readContentLength(HttpURLConnection conn) {
+        try {
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                // Content-Range: bytes 0-xxx/total
+                String range = conn.getHeaderField("Content-Range");
+                if (range != null && range.lastIndexOf('/') > 0) {
+                    return Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+                }
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                String len = conn.getHeaderField("Content-Length");
+                if (len != null) {
+                    return Long.parseLong(len.trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.e(TAG, "readContentLength error " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static HttpURLConnection openConnection(String url, long offset) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setRequestProperty("Range", "bytes=" + offset + "-");
+        return conn;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("unexpected end of stream");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void writeStatus(OutputStream out, String status, int length) throws IOException {
+        String resp = "HTTP/1.1 " + status + "\r\nContent-Length: " + length
+                + "\r\nConnection: close\r\n\r\n";
+        out.write(resp.getBytes("UTF-8"));
+        out.flush();
+    }
+
+    /**
+     * 播放器发来的请求,只解析需要的部分
+     */
+    private static class Request {
+        String token;
+        String url;
+        boolean isHead;
+        boolean hasRange;
+        long rangeStart = -1;//-1表示 bytes=-N 形式
+        long rangeEnd = -1;//包含,-1表示到结尾;bytes=-N 时为N
+
+        static Request read(InputStream in) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+
+            // GET /token/encodedUrl HTTP/1.1
+            String[] parts = line.split(" ");
+            if (parts.length < 2 || parts[1].length() < 2) {
+                return null;
+            }
+
+            Request request = new Request();
+            request.isHead = "HEAD".equals(parts[0]);
+            String path = parts[1].substring(1);
+            int slash = path.indexOf('/');
+            if (slash > 0) {
+                request.token = path.substring(0, slash);
+                request.url = URLDecoder.decode(path.substring(slash + 1), "UTF-8");
+            }
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && "range".equalsIgnoreCase(line.substring(0, colon).trim())) {
+                    // 支持单个范围: bytes=start-, bytes=start-end, bytes=-suffix
+                    String value = line.substring(colon + 1).trim();
+                    if (value.startsWith("bytes=") && value.indexOf(',') < 0) {
+                        int dash = value.indexOf('-');
+                        try {
+                            String first = value.substring(6, dash).trim();
+                            String second = value.substring(dash + 1).trim();
+                            request.rangeStart = first.isEmpty() ? -1 : Long.parseLong(first);
+                            request.rangeEnd = second.isEmpty() ? -1 : Long.parseLong(second);
+                            request.hasRange = request.rangeStart >= 0 || request.rangeEnd > 0;
+                        } catch (NumberFormatException | StringIndexOutOfBoundsException ignore) {
+                        }
+                    }
+                }
+            }
+            return request;
+        }
+    }
+}
@@ -0,0 +1,2147 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Rect;
+import android.media.MediaPlayer;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Func1;
+import rx.subjects.PublishSubject;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放控制逻辑,由 {@link BaseVideoView}(SurfaceView) 和 {@link TextureVideoView}(TextureView) 共用
+ * 包括状态机,异步指令队列,异步释放,播放列表,预加载,解码器配额,自动恢复,进度时钟及事件流等
+ * 与具体显示控件相关的操作(关联surface,调整缓冲区尺寸)通过 {@link RenderTarget} 交给宿主view处理
+ * 除设置视频地址外,所有方法都需在主线程中调用
+ */
+class VideoPlayerController {
+
+    /**
+     * 宿主view提供的显示目标
+     */
+    interface RenderTarget {
+        /**
+         * 将播放器关联到当前的surface,surface可用时才会调用
+         */
+        void attach(PlayerEngine player);
+
+        /**
+         * 解除播放器与surface的关联,可能在surface销毁回调中同步调用
+         */
+        void detach(PlayerEngine player);
+
+        /**
+         * 视频尺寸已确定或发生变化,或者切换了缩放模式,在主线程中回调
+         * view尺寸在宽高比变化时才会重新layout,同比例的分辨率变化只需在这里缩放画面
+         *
+         * @param scaleMode 取值见 BaseVideoView.SCALE_*
+         */
+        void applyScaleMode(PlayerEngine player, int scaleMode, int videoWidth, int videoHeight);
+
+        /**
+         * 开始加载新的视频,在主线程中回调
+         */
+        void onVideoChanged(String path);
+
+        /**
+         * 当前视频的第一帧画面已经显示
+         */
+        void onFirstFrame();
+
+        /**
+         * view从窗口移除后超时未重新attach,播放器已释放,同时释放移除时保留的surface,在主线程中回调
+         */
+        void releaseRetainedSurface();
+    }
+
+    private static final String TAG = "VideoPlayerController";
+
+    // all possible internal states, 转换规则见 PlaybackStateMachine
+    private static final int STATE_ERROR = PlaybackStateMachine.STATE_ERROR;
+    private static final int STATE_IDLE = PlaybackStateMachine.STATE_IDLE;//初始状态
+    private static final int STATE_PREPARING = PlaybackStateMachine.STATE_PREPARING;
+    private static final int STATE_PREPARED = PlaybackStateMachine.STATE_PREPARED;
+    private static final int STATE_PLAYING = PlaybackStateMachine.STATE_PLAYING;
+    private static final int STATE_PAUSED = PlaybackStateMachine.STATE_PAUSED;
+    private static final int STATE_PLAYBACK_COMPLETED = PlaybackStateMachine.STATE_PLAYBACK_COMPLETED;//正常播放结束
+    private static final int STATE_RELEASING = PlaybackStateMachine.STATE_RELEASING;//正在异步释放中
+    private static final int STATE_STOPED = PlaybackStateMachine.STATE_STOPED;// 返回桌面,切换页面等
+
+    // 当前状态及目标状态,所有状态切换都通过CAS完成
+    private final PlaybackStateMachine mState = new PlaybackStateMachine();
+    private volatile int mSeekWhenPrepared = 0;  // recording the seek position while preparing
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final View mView;
+    private final RenderTarget mTarget;
+    // 仅在主线程中赋值,其他线程读取时需先保存到局部变量
+    private volatile PlayerEngine mPlayer;
+    private volatile String mVideoUrl;
+    // 本地数据源,为null时按mVideoUrl路径播放
+    private volatile MediaSource mSource;
+    // 可选的本地缓存代理,设置后在线视频通过代理播放
+    private VideoCacheProxy mCacheProxy;
+
+    // 播放列表及预加载
+    private static final int DEFAULT_PREFETCH_COUNT = 2;
+    // 当前视频已缓冲部分领先播放进度该百分比后才允许预加载
+    private static final int PREFETCH_BUFFER_AHEAD_PERCENT = 20;
+    private final List<String> mPlaylist = new ArrayList<>();
+    private int mPlaylistIndex = -1;
+    private int mPrefetchCount = DEFAULT_PREFETCH_COUNT;
+    private final VideoPrefetcher mPrefetcher = new VideoPrefetcher();
+    // 是否提前prepare播放列表中的下一个视频
+    private boolean mPrepareNextEnabled = false;
+    private PlayerEngine mNextPlayer;
+    private String mNextUrl;
+    private boolean mNextPrepared = false;
+    // 正在异步释放的当前播放器,用于区分预加载播放器的释放回调
+    private PlayerEngine mReleasingPlayer;
+    // 无缝连播: 播放结束时直接切换到已prepare好的下一个播放器
+    private boolean mGaplessEnabled = false;
+    // 播放列表循环播放
+    private boolean mLoopPlaylist = false;
+
+    //监听器
+    private MediaPlayer.OnPreparedListener mOnPreparedListener;
+    private MediaPlayer.OnErrorListener mOnErrorListener;
+    private MediaPlayer.OnCompletionListener mOnCompletionListener;
+
+    private volatile int mCurrentBufferPercentage = -1;//当前已缓冲进度
+    // surface创建后才去初始化mediaPlayer,否则可能出现有声音无图像,黑屏
+    private volatile boolean mSurfaceCreated = false;
+
+    // 获取视频尺寸,用于自动调整画面比例
+    private int mVideoWidth;
+    private int mVideoHeight;
+    // 参与测量的视频尺寸,只在宽高比变化时更新,同比例的分辨率变化不触发layout
+    private int mLayoutVideoWidth;
+    private int mLayoutVideoHeight;
+    private int mScaleMode = BaseVideoView.SCALE_FIT;
+
+    // 播放内核,单元测试中可替换
+    private PlayerEngine.Factory mEngineFactory = MediaPlayerEngine.FACTORY;
+
+    // 所有播放器操作都在该队列中异步串行执行
+    private final PlayerCommandQueue mCommandQueue;
+    private final PlayerCommandQueue.Callback mCommandCallback = new PlayerCommandQueue.Callback() {
+        @Override
+        public void onCommandComplete(PlayerCommandQueue.Command cmd, Throwable error) {
+            onPlayerCommandComplete(cmd, error);
+        }
+
+        @Override
+        public void onCommandCoalesced(PlayerCommandQueue.Command cmd) {
+            // 在发起指令的线程中回调,统计及其回调只在主线程中进行
+            final int type = cmd.type;
+            final long timestamp = PlaybackMetrics.now();
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    mMetrics.onCommandCoalesced(type, timestamp);
+                }
+            });
+        }
+    };
+
+    // 性能统计
+    private final PlaybackMetrics mMetrics = new PlaybackMetrics();
+
+    // 同一时刻只执行一个seek,执行期间只保留最新的请求
+    private final SeekScheduler mSeekScheduler = new SeekScheduler(new SeekScheduler.Executor() {
+        @Override
+        public boolean executeSeek(int msec, boolean preview) {
+            PlayerEngine player = mPlayer;
+            if (player == null || !mState.isInPlaybackState()) {
+                return false;
+            }
+            mMetrics.onSeekStart();
+            if (preview) {
+                mCommandQueue.seekPreview(player, msec, mState.getGeneration());
+            } else {
+                mCommandQueue.seekTo(player, msec, mState.getGeneration());
+            }
+            sMainHandler.removeCallbacks(mSeekTimeoutRunnable);
+            sMainHandler.postDelayed(mSeekTimeoutRunnable, SeekScheduler.SEEK_TIMEOUT_MS);
+            return true;
+        }
+    });
+
+    /**
+     * onSeekComplete未回调(seek出错,或seek指令被stop/release合并掉)时按已完成处理,
+     * 否则seek期间getCurrentPosition一直返回目标位置,进度时钟也一直停止
+     */
+    private final Runnable mSeekTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mSeekScheduler.isSeeking()) {
+                return;
+            }
+            Log.w(TAG, "seek timeout");
+            onSeekFinished();
+        }
+    };
+
+    // 多个view同时播放时的解码器配额
+    private final PlaybackCoordinator mCoordinator = PlaybackCoordinator.getInstance();
+    // 配额被抢占而释放了播放器,重新获得配额后恢复到mResumePosition
+    private boolean mDecoderParked = false;
+    // 重新加载后需要恢复到的播放进度
+    private int mResumePosition = 0;
+    private final Rect mVisibleRect = new Rect();
+
+    // surface销毁后保留已prepare好的播放器的时长,0表示直接释放
+    private long mRetainGraceMs = 0;
+    private boolean mRetained = false;
+
+    // view从窗口移除但surface仍保留(TextureVideoView)时暂停播放,超时未重新attach则释放播放器及surface,
+    // 避免移除的view继续解码播放声音,以及PlaybackCoordinator长期持有controller导致view及Activity泄漏
+    private static final long DEFAULT_DETACH_GRACE_MS = 5 * 1000;
+    private boolean mDetached = false;
+    private boolean mDetachPaused = false;//移除时正在播放,重新attach时恢复
+
+    // 网络类错误的自动恢复
+    private final PlaybackRecovery mRecovery = new PlaybackRecovery();
+    private boolean mRecovering = false;
+    private int mLastPosition = 0;//最近一次记录的播放进度,出错后播放器已无法获取
+    // 恢复后重新prepare成功时的出错位置,播放越过该位置 RECOVERY_STABLE_MS 后才重新计算重试次数,
+    // 避免每次都在同一位置出错的视频无限重试
+    private int mRecoveryCheckpoint = -1;
+    private static final int RECOVERY_STABLE_MS = 5 * 1000;
+    private boolean mNetworkReceiverRegistered = false;
+
+    // 起播/卡顿后恢复策略: 缓冲足够或下载速度足够快时才开始播放
+    private static final long DEFAULT_START_MAX_WAIT_MS = 10 * 1000;
+    private long mStartMinBufferMs = 0;
+    private float mStartRateFactor = 0;
+    private long mStartMaxWaitMs = DEFAULT_START_MAX_WAIT_MS;
+    private boolean mWaitingForBuffer = false;
+    private final BandwidthEstimator mBandwidth = new BandwidthEstimator();
+
+    // 播放进度时钟,getCurrentPosition()不再每次都调用native方法
+    private static final long CLOCK_SYNC_INTERVAL_MS = 1000;
+    private static final long FRAME_INTERVAL_MS = 16;
+    private final PositionClock mClock = new PositionClock();
+    private boolean mBuffering = false;
+    private BaseVideoView.OnPositionUpdateListener mOnPositionUpdateListener;
+    private boolean mFrameScheduled = false;
+
+    // 播放器事件流,只在主线程中发送
+    private static final long DEFAULT_EVENT_THROTTLE_MS = 200;
+    private final PublishSubject<PlayerEvent> mEventSubject = PublishSubject.create();
+    private long mEventThrottleMs = DEFAULT_EVENT_THROTTLE_MS;
+    private PlaybackMetrics.Listener mMetricsListener;
+
+    // 可见时自动播放,不可见时自动暂停
+    private static final int AUTO_PLAY_VISIBLE_PERCENT = 50;//可见面积超过该百分比才算可见
+    private boolean mAutoPlayOnVisible = false;
+    private boolean mAutoPaused = false;
+    private boolean mVisibilityCheckPosted = false;
+
+    // 内存不足时释放了不可见view的播放器,重新可见前不再加载
+    private boolean mTrimParked = false;
+
+    VideoPlayerController(View view, RenderTarget target) {
+        this(view, target, AndroidSchedulers.mainThread(), PlayerCommandQueue.sExecutor);
+    }
+
+    /**
+     * 单元测试中替换主线程及指令线程,配合 {@link #setEngineFactory} 在jvm上以虚拟时间驱动播放控制逻辑
+     *
+     * @param mainScheduler   指令执行结果回调所在的线程
+     * @param commandExecutor 执行播放器指令的线程
+     */
+    VideoPlayerController(View view, RenderTarget target, Scheduler mainScheduler, Executor commandExecutor) {
+        mView = view;
+        mTarget = target;
+        mCommandQueue = new PlayerCommandQueue(mCommandCallback, mainScheduler, commandExecutor);
+        mState.setListener(new PlaybackStateMachine.Listener() {
+            @Override
+            public void onStateChanged(int from, int to) {
+                emitEvent(PlayerEvent.TYPE_STATE_CHANGED, from, to);
+            }
+        });
+        mMetrics.setListener(new PlaybackMetrics.Listener() {
+            @Override
+            public void onMetricEvent(PlaybackMetrics.Event event) {
+                PlaybackMetrics.Listener listener = mMetricsListener;
+                if (listener != null) {
+                    listener.onMetricEvent(event);
+                }
+                if (mEventSubject.hasObservers()) {
+                    postEvent(new PlayerEvent(PlayerEvent.TYPE_METRIC, event.type, 0, event));
+                }
+            }
+        });
+    }
+
+    /**
+     * 播放器事件流,包括状态切换,缓冲,视频尺寸变化,错误,播放进度及性能统计,详见 {@link PlayerEvent}
+     * 1. 所有事件都在主线程中发出
+     * 2. 缓冲百分比和播放进度属于高频事件,每 {@link #setEventThrottle(long)} 毫秒最多发出一个(周期内的最后一个),
+     * 因此可能晚于之后发生的其他事件
+     * 3. 订阅者处理不过来时(如observeOn到其他线程),高频事件只保留最新的,其他事件全部缓存
+     * 每次调用返回的Observable相互独立,没有订阅者时不会产生任何事件
+     */
+    Observable<PlayerEvent> events() {
+        final long throttleMs = mEventThrottleMs;
+        return mEventSubject.publish(new Func1<Observable<PlayerEvent>, Observable<PlayerEvent>>() {
+            @Override
+            public Observable<PlayerEvent> call(Observable<PlayerEvent> shared) {
+                Observable<PlayerEvent> discrete = shared.filter(IS_DISCRETE_EVENT).onBackpressureBuffer();
+                Observable<PlayerEvent> buffering = shared.filter(IS_BUFFERING_UPDATE)
+                        .throttleLast(throttleMs, TimeUnit.MILLISECONDS, AndroidSchedulers.mainThread())
+                        .onBackpressureLatest();
+                Observable<PlayerEvent> position = shared.filter(IS_POSITION_UPDATE)
+                        .throttleLast(throttleMs, TimeUnit.MILLISECONDS, AndroidSchedulers.mainThread())
+                        .onBackpressureLatest();
+                return Observable.merge(discrete, buffering, position);
+            }
+        });
+    }
+
+    /**
+     * 高频事件的限流周期,对之后调用 {@link #events()} 返回的事件流生效
+     */
+    void setEventThrottle(long throttleMs) {
+        mEventThrottleMs = Math.max(1, throttleMs);
+    }
+
+    private static final Func1<PlayerEvent, Boolean> IS_DISCRETE_EVENT = new Func1<PlayerEvent, Boolean>() {
+        @Override
+        public Boolean call(PlayerEvent event) {
+            return !event.isHighFrequency();
+        }
+    };
+
+    private static final Func1<PlayerEvent, Boolean> IS_BUFFERING_UPDATE = new Func1<PlayerEvent, Boolean>() {
+        @Override
+        public Boolean call(PlayerEvent event) {
+            return event.type == PlayerEvent.TYPE_BUFFERING_UPDATE;
+        }
+    };
+
+    private static final Func1<PlayerEvent, Boolean> IS_POSITION_UPDATE = new Func1<PlayerEvent, Boolean>() {
+        @Override
+        public Boolean call(PlayerEvent event) {
+            return event.type == PlayerEvent.TYPE_POSITION;
+        }
+    };
+
+    private void emitEvent(int type, int arg1, int arg2) {
+        if (mEventSubject.hasObservers()) {
+            postEvent(new PlayerEvent(type, arg1, arg2));
+        }
+    }
+
+    /**
+     * 事件只在主线程中发出,保证订阅者收到的事件是串行的
+     */
+    private void postEvent(final PlayerEvent event) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mEventSubject.onNext(event);
+        } else {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mEventSubject.onNext(event);
+                }
+            });
+        }
+    }
+
+    /**
+     * content/android.resource uri通过文件描述符播放,file uri按本地路径播放,其他按在线地址播放
+     */
+    void setVideoURI(Uri uri) {
+        String scheme = uri.getScheme();
+        if (MediaSource.isLocalUri(uri)) {
+            setVideoSource(MediaSource.fromUri(mView.getContext(), uri));
+        } else if (scheme == null || ContentResolver.SCHEME_FILE.equals(scheme)) {
+            setVideoPath(uri.getPath());
+        } else {
+            setVideoPath(uri.toString());
+        }
+    }
+
+    /**
+     * 播放文件描述符中的全部内容,内部会dup一份副本,调用者可在调用后随时关闭自己的描述符
+     */
+    void setVideoFileDescriptor(FileDescriptor fd) {
+        setVideoFileDescriptor(fd, 0, -1);
+    }
+
+    /**
+     * 播放文件描述符中从offset开始的length字节,适用于多个视频打包在同一个文件中的情况
+     *
+     * @param length 小于0表示到文件结尾
+     */
+    void setVideoFileDescriptor(FileDescriptor fd, long offset, long length) {
+        setVideoSource(MediaSource.fromFileDescriptor(fd, offset, length));
+    }
+
+    /**
+     * 播放已打开的AssetFileDescriptor,调用后即可关闭
+     */
+    void setVideoAssetFileDescriptor(AssetFileDescriptor afd) {
+        setVideoFileDescriptor(afd.getFileDescriptor(), afd.getStartOffset(), afd.getDeclaredLength());
+    }
+
+    /**
+     * 播放assets中的视频,需在build.gradle中配置 aaptOptions { noCompress "mp4" } 使其不被压缩
+     */
+    void setVideoAsset(String assetName) {
+        setVideoSource(MediaSource.fromAsset(mView.getContext(), assetName));
+    }
+
+    /**
+     * 获取视频路径信息
+     */
+    String getVideoPath() {
+        return mVideoUrl;
+    }
+
+    /**
+     * 设置视频地址并开始播放,可在任意线程调用
+     * 之前视频尚未完成的异步操作会因generation过期而被丢弃
+     */
+    void setVideoPath(String path) {
+        setVideoSource(path, null);
+    }
+
+    private void setVideoSource(MediaSource source) {
+        setVideoSource(source.getKey(), source);
+    }
+
+    private void setVideoSource(final String path, MediaSource source) {
+        //        Log.i(TAG, "setVideoPath ");
+        // TODO: 2016/10/12 判断path合法性
+        MediaSource oldSource = mSource;
+        mSource = source;
+        if (oldSource != null && oldSource != source) {
+            oldSource.close();
+        }
+        mVideoUrl = path;
+        mState.newGeneration();
+        mState.setTargetState(STATE_PLAYING);
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mMetrics.onLoadStart(path);
+                mTarget.onVideoChanged(path);
+                resetBufferStats();
+                mDecoderParked = false;
+                mResumePosition = 0;
+                mLastPosition = 0;
+                mAutoPaused = false;
+                mTrimParked = false;
+                stopRecovery();
+                resetRecovery();
+                updateAutoPlay();
+                updatePlayerPath();
+            }
+        });
+        //        requestLayout();
+        //        invalidate();
+    }
+
+    /**
+     * 播放器相关的操作都在主线程中发起,其他线程调用时post到主线程
+     */
+    private static void runOnMainThread(Runnable r) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            r.run();
+        } else {
+            sMainHandler.post(r);
+        }
+    }
+
+    /**
+     * 设置本地缓存代理,下次加载视频时生效,传null则直接访问源地址
+     * 代理需由调用者先 {@link VideoCacheProxy#start()}
+     */
+    void setCacheProxy(VideoCacheProxy proxy) {
+        mCacheProxy = proxy;
+        mPrefetcher.setProxy(proxy);
+    }
+
+    /**
+     * surface销毁(如返回桌面)后,在graceMs内保留已prepare好的播放器,surface重建时直接重新关联并继续播放,
+     * 无需重新联网prepare;超时后释放播放器,surface重建时再从原进度重新加载
+     *
+     * @param graceMs 保留时长,0表示surface销毁时立即释放(默认)
+     */
+    void setRetainPlayerOnSurfaceLoss(long graceMs) {
+        mRetainGraceMs = Math.max(0, graceMs);
+    }
+
+    /**
+     * 网络类错误(超时,连接断开等)的自动重试次数,0表示不自动恢复,默认为5次
+     * 重试时从出错前的进度重新加载,设置了缓存代理时已缓存的部分直接从本地读取
+     * 重试次数用完后才回调 {@link #setOnErrorListener(MediaPlayer.OnErrorListener)}
+     * 重新加载成功后需播放越过出错位置5秒才重新计数,每次都在同一位置出错的视频最多重试maxRetries次
+     */
+    void setAutoRecoveryRetries(int maxRetries) {
+        mRecovery.setMaxRetries(maxRetries);
+    }
+
+    /**
+     * 自动恢复的重试间隔,从baseDelayMs开始按指数增长,最大不超过maxDelayMs,实际间隔带有随机抖动
+     */
+    void setAutoRecoveryDelay(long baseDelayMs, long maxDelayMs) {
+        mRecovery.setDelay(baseDelayMs, maxDelayMs);
+    }
+
+    /**
+     * 设置起播策略,在线视频prepare完成及播放中卡顿时,满足以下任一条件才(继续)播放:
+     * 1. 已缓冲的时长领先播放进度minBufferedMs
+     * 2. 估算的下载速度超过视频码率的rateFactor倍
+     * 3. 等待超过maxWaitMs
+     * 两个条件都 <= 0 时表示prepare完成后立即播放(默认)
+     */
+    void setStartPolicy(long minBufferedMs, float rateFactor, long maxWaitMs) {
+        mStartMinBufferMs = minBufferedMs;
+        mStartRateFactor = rateFactor;
+        mStartMaxWaitMs = maxWaitMs > 0 ? maxWaitMs : DEFAULT_START_MAX_WAIT_MS;
+    }
+
+    /**
+     * 最近几秒的下载速度与视频码率之比,大于1表示下载比播放快,数据不足时返回-1
+     */
+    float getDownloadSpeedRatio() {
+        return mBandwidth.getRate();
+    }
+
+    /**
+     * 是否因解码器配额不足而暂时释放了播放器,见 {@link PlaybackCoordinator}
+     */
+    boolean isDecoderParked() {
+        return mDecoderParked;
+    }
+
+    /**
+     * 设置性能统计回调,包括加载耗时,首帧耗时,卡顿,seek耗时,释放耗时等,详见 {@link PlaybackMetrics.Event}
+     */
+    void setPlaybackMetricsListener(PlaybackMetrics.Listener listener) {
+        mMetricsListener = listener;
+    }
+
+    /**
+     * 设置播放列表,并从startIndex开始播放
+     * 当前视频加载成功后会预加载后续 {@link #setPrefetchCount(int)} 个视频的开头部分(需设置缓存代理)
+     */
+    void setPlaylist(List<String> urls, int startIndex) {
+        mPlaylist.clear();
+        if (urls != null) {
+            mPlaylist.addAll(urls);
+        }
+        releaseNextPlayer();
+        if (startIndex >= 0 && startIndex < mPlaylist.size()) {
+            mPlaylistIndex = startIndex;
+            setVideoPath(mPlaylist.get(startIndex));
+        } else {
+            mPlaylistIndex = -1;
+        }
+    }
+
+    List<String> getPlaylist() {
+        return new ArrayList<>(mPlaylist);
+    }
+
+    int getPlaylistIndex() {
+        return mPlaylistIndex;
+    }
+
+    /**
+     * 播放列表中的下一个视频,已提前prepare好的话直接切换播放器
+     *
+     * @return 没有下一个视频时返回false
+     */
+    boolean playNext() {
+        int next = nextPlaylistIndex();
+        if (next < 0) {
+            return false;
+        }
+        mPlaylistIndex = next;
+        String url = mPlaylist.get(next);
+        if (!handoverToNextPlayer(url)) {
+            setVideoPath(url);
+        }
+        return true;
+    }
+
+    /**
+     * 播放列表中下一个视频的位置,没有时返回-1
+     */
+    private int nextPlaylistIndex() {
+        int next = mPlaylistIndex + 1;
+        if (next >= mPlaylist.size()) {
+            next = mLoopPlaylist && !mPlaylist.isEmpty() ? 0 : -1;
+        }
+        return next;
+    }
+
+    /**
+     * 无缝连播模式,播放列表中的视频依次自动播放,中间没有黑屏
+     * 开启后会自动提前prepare下一个视频({@link #setPrepareNextEnabled(boolean)}),播放结束时直接切换播放器
+     * 纯音频流在4.1及以上系统使用 {@link MediaPlayer#setNextMediaPlayer(MediaPlayer)} 由系统衔接
+     * 切换到下一个视频时不会回调 {@link MediaPlayer.OnCompletionListener},只有列表播放完毕(不循环)时才回调
+     */
+    void setGaplessPlaybackEnabled(boolean enabled) {
+        mGaplessEnabled = enabled;
+        setPrepareNextEnabled(enabled);
+    }
+
+    /**
+     * 播放列表是否循环播放,列表只有一个视频时直接使用 {@link MediaPlayer#setLooping(boolean)}
+     */
+    void setLoopPlaylist(boolean loop) {
+        mLoopPlaylist = loop;
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            mCommandQueue.setLooping(player, isSingleItemLoop(), mState.getGeneration());
+        }
+    }
+
+    private boolean isSingleItemLoop() {
+        return mLoopPlaylist && mPlaylist.size() == 1 && mPlaylistIndex == 0;
+    }
+
+    /**
+     * 预加载指定视频的开头部分到缓存代理中,在当前视频缓冲充足时才会下载
+     */
+    void prefetch(List<String> urls) {
+        mPrefetcher.prefetch(urls);
+    }
+
+    /**
+     * 当前视频加载成功后预加载的后续视频个数,0表示不预加载
+     */
+    void setPrefetchCount(int count) {
+        mPrefetchCount = Math.max(0, count);
+    }
+
+    /**
+     * 每个视频预加载的字节数
+     */
+    void setPrefetchBytes(long bytes) {
+        mPrefetcher.setPrefetchBytes(bytes);
+    }
+
+    /**
+     * 预加载限速,0表示不限速
+     */
+    void setPrefetchMaxBytesPerSecond(long bytesPerSecond) {
+        mPrefetcher.setMaxBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * 是否在当前视频加载成功后,提前用另一个播放器prepare播放列表中的下一个视频
+     * 开启后 {@link #playNext()} 可直接切换,但会多占用一个解码器
+     */
+    void setPrepareNextEnabled(boolean enabled) {
+        mPrepareNextEnabled = enabled;
+        if (!enabled) {
+            releaseNextPlayer();
+        }
+    }
+
+    /**
+     * 精确跳转到指定的播放位置
+     * 在子线程中执行,避免断网时造成的anr;上一次seek完成前的连续调用只执行最后一次
+     */
+    void seekTo(int msec) {
+        seekInternal(msec, false);
+    }
+
+    /**
+     * 拖动进度条过程中的快速预览,只跳转到附近的关键帧,松手后再调用 {@link #seekTo(int)} 精确定位
+     */
+    void seekPreview(int msec) {
+        seekInternal(msec, true);
+    }
+
+    private void seekInternal(int msec, boolean preview) {
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            mLastPosition = msec;
+            mSeekScheduler.seekTo(msec, preview);
+            mSeekWhenPrepared = 0;
+        } else {
+            mSeekWhenPrepared = msec;
+        }
+    }
+
+    /**
+     * 开始播放
+     */
+    void start() {
+        //        Log.i(TAG, "start ");
+        mState.setTargetState(STATE_PLAYING);
+        clearBufferWait();
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            int generation = mState.getGeneration();
+            if (mState.compareAndSet(STATE_STOPED, STATE_PREPARING)) {
+                mCommandQueue.prepare(player, null, generation);
+            } else if (mState.transitionTo(STATE_PLAYING)) {
+                mCommandQueue.start(player, generation);
+            }
+        }
+    }
+
+    /**
+     * 暂停
+     */
+    void pause() {
+        //        Log.i(TAG, "pause ");
+        mState.setTargetState(STATE_PAUSED);
+        clearBufferWait();
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            mLastPosition = player.getCurrentPosition();
+            mCommandQueue.pause(player, mState.getGeneration());
+            mState.compareAndSet(STATE_PLAYING, STATE_PAUSED);
+        }
+    }
+
+    /**
+     * 停止播放
+     * 不懂为啥不叫stop()...
+     */
+    void stopPlayback() {
+        Log.i(TAG, "stopPlayback " + mState.getState());
+        mState.setTargetState(STATE_STOPED);
+        // stop依然有可能anr,因此放到子线程中执行
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState() && mState.transitionTo(STATE_STOPED)) {
+            mCommandQueue.stop(player, mState.getGeneration());
+        }
+    }
+
+    /**
+     * 获取当前播放进度:毫秒
+     */
+    int getCurrentPosition() {
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            if (mSeekScheduler.isSeeking()) {
+                return mSeekScheduler.getTargetPosition();
+            }
+            return (int) mClock.getPosition(SystemClock.elapsedRealtime());
+        }
+        return 0;
+    }
+
+    /**
+     * 设置播放进度回调,用于进度条,字幕同步等需要每帧刷新的场景
+     */
+    void setOnPositionUpdateListener(BaseVideoView.OnPositionUpdateListener l) {
+        mOnPositionUpdateListener = l;
+        if (l != null && mClock.isRunning()) {
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * 读取一次真实进度,重新校准进度时钟
+     * 在开始,暂停,seek完成,卡顿开始/结束及播放中每隔 {@link #CLOCK_SYNC_INTERVAL_MS} 调用
+     */
+    private void syncClock() {
+        PlayerEngine player = mPlayer;
+        sMainHandler.removeCallbacks(mClockSyncRunnable);
+        if (player == null || !mState.isInPlaybackState()) {
+            mClock.reset();
+            return;
+        }
+
+        boolean running = mState.getState() == STATE_PLAYING && !mBuffering && !mSeekScheduler.isSeeking();
+        int position = player.getCurrentPosition();
+        mClock.anchor(position, SystemClock.elapsedRealtime(), running);
+        if (running) {
+            checkRecoveryProgress(position);
+            sMainHandler.postDelayed(mClockSyncRunnable, CLOCK_SYNC_INTERVAL_MS);
+            scheduleFrame();
+        } else {
+            dispatchPosition();
+        }
+    }
+
+    private final Runnable mClockSyncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            syncClock();
+        }
+    };
+
+    private void scheduleFrame() {
+        if (mFrameScheduled || (mOnPositionUpdateListener == null && !mEventSubject.hasObservers())) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mView.postOnAnimation(mFrameRunnable);
+        } else {
+            mView.postDelayed(mFrameRunnable, FRAME_INTERVAL_MS);
+        }
+    }
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFrameScheduled = false;
+            dispatchPosition();
+            if (mClock.isRunning()) {
+                scheduleFrame();
+            }
+        }
+    };
+
+    private void dispatchPosition() {
+        BaseVideoView.OnPositionUpdateListener listener = mOnPositionUpdateListener;
+        boolean hasObservers = mEventSubject.hasObservers();
+        if (listener == null && !hasObservers) {
+            return;
+        }
+        int position = getCurrentPosition();
+        int duration = (int) mClock.getDuration();
+        if (listener != null) {
+            listener.onPositionUpdate(position, duration);
+        }
+        if (hasObservers) {
+            postEvent(new PlayerEvent(PlayerEvent.TYPE_POSITION, position, duration));
+        }
+    }
+
+    private void stopClock() {
+        mClock.reset();
+        mBuffering = false;
+        sMainHandler.removeCallbacks(mClockSyncRunnable);
+        mView.removeCallbacks(mFrameRunnable);
+        mFrameScheduled = false;
+    }
+
+    /**
+     * 获取视频总时长
+     */
+    int getDuration() {
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            return player.getDuration();
+        }
+        return -1;
+    }
+
+    /**
+     * 获取缓存进度
+     */
+    int getBufferPercentage() {
+        if (mPlayer != null) {
+            return mCurrentBufferPercentage;
+        }
+        return 0;
+    }
+
+    /**
+     * 当前播放器是否正在播放
+     */
+    boolean isPlaying() {
+        PlayerEngine player = mPlayer;
+        return player != null && mState.isInPlaybackState() && player.isPlaying();
+    }
+
+    private boolean isInPlaybackState() {
+        return mPlayer != null && mState.isInPlaybackState();
+    }
+
+    boolean canPause() {
+        return isInPlaybackState();
+    }
+
+
+    /**
+     * 宿主view的surface已创建,可以关联播放器
+     */
+    void onSurfaceCreated() {
+        mSurfaceCreated = true;
+        if (mRetained && reattachRetainedPlayer()) {
+            return;
+        }
+        updatePlayerPath();
+    }
+
+    /**
+     * 将保留的播放器关联到新的surface上
+     *
+     * @return 播放器已失效时返回false
+     */
+    private boolean reattachRetainedPlayer() {
+        clearRetention();
+        PlayerEngine player = mPlayer;
+        if (player == null || !mState.isInPlaybackState()) {
+            return false;
+        }
+        try {
+            mTarget.attach(player);
+        } catch (Exception e) {
+            Log.e(TAG, "reattachRetainedPlayer error " + e.getMessage());
+            return false;
+        }
+        mResumePosition = 0;
+        if (mState.getTargetState() == STATE_PLAYING) {
+            start();
+        }
+        return true;
+    }
+
+    /**
+     * 初始化播放器
+     * 默认的 {@link MediaPlayerEngine} 从 {@link MediaPlayerPool} 中租借,避免每次切换视频都重新创建native播放器
+     */
+    private void initPlayer() {
+        if (mPlayer == null) {
+            //            Log.i(TAG, "...initPlayer ");
+            PlayerEngine player = mEngineFactory.create();
+            bindPlayer(player);
+            mSeekScheduler.reset();
+            mPlayer = player;
+        }
+    }
+
+    /**
+     * 设置监听器及显示surface
+     */
+    private void bindPlayer(PlayerEngine player) {
+        player.setListener(mEngineListener);
+        mTarget.attach(player);
+    }
+
+    /**
+     * 用另一个播放器提前prepare播放列表中的下一个视频,不设置surface
+     */
+    private void prepareNextPlayer() {
+        int next = nextPlaylistIndex();
+        if (!mPrepareNextEnabled || next < 0 || next == mPlaylistIndex) {
+            return;
+        }
+
+        String url = mPlaylist.get(next);
+        if (mNextPlayer != null) {
+            if (url.equals(mNextUrl)) {
+                return;
+            }
+            releaseNextPlayer();
+        }
+        // 下一个播放器会多占用一个解码器,配额不足时不提前prepare
+        if (!mCoordinator.requestExtra(mDecoderClient)) {
+            return;
+        }
+
+        PlayerEngine player = mEngineFactory.create();
+        player.setListener(mNextEngineListener);
+        mNextPlayer = player;
+        mNextUrl = url;
+        mNextPrepared = false;
+        String source = mCacheProxy != null ? mCacheProxy.getProxyUrl(url) : url;
+        mCommandQueue.prepare(player, source, mState.getGeneration());
+    }
+
+    private void releaseNextPlayer() {
+        if (mNextPlayer != null) {
+            mCommandQueue.release(mNextPlayer, false, mState.getGeneration());
+            mNextPlayer = null;
+            mNextUrl = null;
+            mNextPrepared = false;
+            mCoordinator.releaseExtra(mDecoderClient);
+        }
+    }
+
+    /**
+     * 切换到已prepare好的下一个播放器,旧播放器异步释放
+     *
+     * @return 下一个播放器未准备好时返回false
+     */
+    private boolean handoverToNextPlayer(String url) {
+        PlayerEngine next = mNextPlayer;
+        if (next == null || !mNextPrepared || !url.equals(mNextUrl) || !mSurfaceCreated) {
+            return false;
+        }
+
+        int state = mState.getState();
+        if (state == STATE_RELEASING || !mState.transitionTo(STATE_PREPARED)) {
+            return false;
+        }
+
+        mNextPlayer = null;
+        mNextUrl = null;
+        mNextPrepared = false;
+        mCoordinator.releaseExtra(mDecoderClient);
+
+        PlayerEngine old = mPlayer;
+        if (mSource != null) {
+            mSource.close();
+            mSource = null;
+        }
+        mVideoUrl = url;
+        mMetrics.onLoadStart(url);
+        mTarget.onVideoChanged(url);
+        mLastPosition = 0;
+        stopRecovery();
+        resetRecovery();
+        int generation = mState.newGeneration();
+        mState.setTargetState(STATE_PLAYING);
+        resetBufferStats();
+        mSeekWhenPrepared = 0;
+        // surface同一时刻只能连接一个解码器,先在主线程断开旧播放器,新播放器才能连接
+        if (old != null) {
+            old.setListener(null);
+            mTarget.detach(old);
+        }
+        bindPlayer(next);
+        mSeekScheduler.reset();
+        clearBufferWait();
+        stopClock();
+        mPlayer = next;
+        if (old != null) {
+            mCommandQueue.release(old, true, generation);
+        }
+        onPlayerPrepared(next);
+        return true;
+    }
+
+    /**
+     * 预加载播放器只关心prepare结果和错误
+     */
+    private final PlayerEngine.Listener mNextEngineListener = new PlayerEngine.Listener() {
+        @Override
+        public void onPrepared(PlayerEngine mp) {
+            if (mp != mNextPlayer) {
+                return;
+            }
+            mNextPrepared = true;
+
+            // 纯音频时由系统在播放结束后直接启动下一个播放器
+            // 视频的surface同一时刻只能连接一个解码器,因此视频仍在onCompletion中切换
+            PlayerEngine current = mPlayer;
+            if (mGaplessEnabled && current != null && mVideoWidth == 0 && mVideoHeight == 0
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mCommandQueue.setNextPlayer(current, mp, mState.getGeneration());
+            }
+        }
+
+        @Override
+        public boolean onError(PlayerEngine mp, int what, int extra) {
+            Log.d(TAG, "next player error: " + what + "," + extra);
+            if (mp == mNextPlayer) {
+                releaseNextPlayer();
+            }
+            return true;
+        }
+
+        @Override
+        public void onCompletion(PlayerEngine engine) {
+        }
+
+        @Override
+        public void onBufferingUpdate(PlayerEngine engine, int percent) {
+        }
+
+        @Override
+        public void onSeekComplete(PlayerEngine engine) {
+        }
+
+        @Override
+        public void onVideoSizeChanged(PlayerEngine engine, int width, int height) {
+        }
+
+        @Override
+        public boolean onInfo(PlayerEngine engine, int what, int extra) {
+            return false;
+        }
+    };
+
+    /**
+     * 当前视频缓冲充足时才允许预加载后续视频
+     */
+    private void updatePrefetchPaused() {
+        PlayerEngine player = mPlayer;
+        int state = mState.getState();
+        boolean allow = false;
+        if (player != null && (state == STATE_PLAYING || state == STATE_PAUSED
+                || state == STATE_PLAYBACK_COMPLETED)) {
+            int duration = player.getDuration();
+            int playedPercent = duration > 0 ? (int) (100L * player.getCurrentPosition() / duration) : 0;
+            allow = mCurrentBufferPercentage >= 100
+                    || mCurrentBufferPercentage - playedPercent >= PREFETCH_BUFFER_AHEAD_PERCENT;
+        }
+        mPrefetcher.setPaused(!allow);
+    }
+
+    /**
+     * 将视频地址设置到mediaPlayer中,并异步加载播放
+     * 若已有播放,则release后再设置
+     */
+    private void updatePlayerPath() {
+        //        Log.i(TAG, "updatePlayerPath ");
+        releasePlayerAsync();
+    }
+
+    /**
+     * 开始加载新视频时清空缓冲进度和带宽采样,避免上一个视频的数据影响起播策略和预加载
+     */
+    private void resetBufferStats() {
+        mCurrentBufferPercentage = -1;
+        mBandwidth.reset();
+    }
+
+    private void resetPlayerUrl() {
+        if (!TextUtils.isEmpty(mVideoUrl) && mPlayer != null) {
+            //                Log.i(TAG, "resetPlayerUrl ");
+            // idle状态才能设置视频地址,之后mPlayer进入initialized状态
+            if (mState.compareAndSet(STATE_IDLE, STATE_PREPARING)) {
+                resetBufferStats();
+                MediaSource source = mSource;
+                if (source != null) {
+                    mCommandQueue.prepareSource(mPlayer, source, mState.getGeneration());
+                } else {
+                    String url = mCacheProxy != null ? mCacheProxy.getProxyUrl(mVideoUrl) : mVideoUrl;
+                    mCommandQueue.prepare(mPlayer, url, mState.getGeneration());
+                }
+            }
+        }
+    }
+
+    /**
+     * 宿主view的surface即将销毁,返回前必须解除播放器与surface的关联
+     */
+    void onSurfaceDestroyed() {
+        mSurfaceCreated = false;
+        PlayerEngine player = mPlayer;
+        if (mRetainGraceMs > 0 && !mDetached && player != null && mState.isInPlaybackState()) {
+            // surface销毁前必须解除关联,setDisplay不涉及网络,不会anr
+            try {
+                mTarget.detach(player);
+                runOnMainThread(mRetainPlayerRunnable);
+                return;
+            } catch (Exception e) {
+                Log.e(TAG, "onSurfaceDestroyed detach error " + e.getMessage());
+            }
+        }
+        mState.setTargetState(STATE_IDLE);
+        mCurrentBufferPercentage = 0;
+        runOnMainThread(mSurfaceDestroyedRunnable);
+    }
+
+    private final Runnable mRetainPlayerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            retainPlayer();
+        }
+    };
+
+    private final Runnable mRetainExpiredRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onRetainExpired();
+        }
+    };
+
+    /**
+     * surface已销毁,暂停并保留播放器,目标状态不变,以便surface重建后恢复
+     */
+    private void retainPlayer() {
+        if (mSurfaceCreated) {
+            // surface已经重建,由onSurfaceCreated处理
+            return;
+        }
+        PlayerEngine player = mPlayer;
+        if (player == null || !mState.isInPlaybackState()) {
+            mState.setTargetState(STATE_IDLE);
+            mSurfaceDestroyedRunnable.run();
+            return;
+        }
+
+        mRetained = true;
+        mResumePosition = player.getCurrentPosition();
+        if (mState.compareAndSet(STATE_PLAYING, STATE_PAUSED)) {
+            mCommandQueue.pause(player, mState.getGeneration());
+        }
+        mPrefetcher.setPaused(true);
+        sMainHandler.postDelayed(mRetainExpiredRunnable, mRetainGraceMs);
+    }
+
+    /**
+     * 保留超时,释放播放器,surface重建后从记录的进度重新加载
+     */
+    private void onRetainExpired() {
+        if (!mRetained) {
+            return;
+        }
+        int target = mState.getTargetState();
+        mDecoderParked = target == STATE_PLAYING || target == STATE_PAUSED;
+        mCoordinator.cancel(mDecoderClient);
+        releaseNextPlayer();
+        releasePlayerAsync();
+    }
+
+    private void clearRetention() {
+        if (mRetained) {
+            mRetained = false;
+            sMainHandler.removeCallbacks(mRetainExpiredRunnable);
+        }
+    }
+
+    private final Runnable mSurfaceDestroyedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDecoderParked = false;
+            mTrimParked = false;
+            stopRecovery();
+            mCoordinator.cancel(mDecoderClient);
+            releasePlayerAsync();
+        }
+    };
+
+    void onAttachedToWindow() {
+        clearDetachHold();
+        if (mDetachPaused) {
+            mDetachPaused = false;
+            start();
+        }
+        mView.getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        MemoryTrimmer trimmer = MemoryTrimmer.getInstance();
+        trimmer.install(mView.getContext());
+        trimmer.addListener(mTrimListener);
+        onVisibilityChanged();
+    }
+
+    void onDetachedFromWindow() {
+        mView.getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        MemoryTrimmer.getInstance().removeListener(mTrimListener);
+        stopRecovery();
+        mView.removeCallbacks(mFrameRunnable);
+        mFrameScheduled = false;
+        mPrefetcher.cancel();
+        releaseNextPlayer();
+        if (mRetained) {
+            // view已移除,不再等待surface重建
+            mState.setTargetState(STATE_IDLE);
+            mSurfaceDestroyedRunnable.run();
+        } else {
+            // 仍保留surface的view(如列表中被回收的TextureVideoView)此时已不可见
+            updateAutoPlay();
+            holdOnDetach();
+        }
+    }
+
+    /**
+     * view已移除但surface仍保留,暂停播放,超过保留时长仍未重新attach时释放
+     * 保留时长同 {@link #setRetainPlayerOnSurfaceLoss(long)},未设置时为 DEFAULT_DETACH_GRACE_MS
+     */
+    private void holdOnDetach() {
+        if (!mSurfaceCreated) {
+            return;
+        }
+        mDetached = true;
+        if (mState.getTargetState() == STATE_PLAYING) {
+            pause();
+            mDetachPaused = true;
+        }
+        sMainHandler.removeCallbacks(mDetachExpiredRunnable);
+        sMainHandler.postDelayed(mDetachExpiredRunnable,
+                mRetainGraceMs > 0 ? mRetainGraceMs : DEFAULT_DETACH_GRACE_MS);
+    }
+
+    private void clearDetachHold() {
+        mDetached = false;
+        sMainHandler.removeCallbacks(mDetachExpiredRunnable);
+    }
+
+    private final Runnable mDetachExpiredRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onDetachExpired();
+        }
+    };
+
+    /**
+     * 移除超时,释放播放器及保留的surface,重新attach后surface重建时从原进度重新加载
+     */
+    private void onDetachExpired() {
+        if (!mDetached || !mSurfaceCreated) {
+            return;
+        }
+        PlayerEngine player = mPlayer;
+        int target = mState.getTargetState();
+        boolean resume = mDetachPaused || mAutoPaused || target == STATE_PLAYING || target == STATE_PAUSED;
+        int position = player != null && mState.isInPlaybackState() ? player.getCurrentPosition() : mResumePosition;
+        // 释放surface时同步回调onSurfaceDestroyed,mDetached期间不会再保留播放器
+        mTarget.releaseRetainedSurface();
+        mDetached = false;
+        if (resume && !TextUtils.isEmpty(mVideoUrl)) {
+            mResumePosition = position;
+            mDecoderParked = true;
+        }
+    }
+
+    /**
+     * 宿主view的可见性,焦点或在屏幕中的位置可能发生了变化
+     */
+    void onVisibilityChanged() {
+        mCoordinator.invalidate();
+        if ((mAutoPlayOnVisible || mTrimParked) && !mVisibilityCheckPosted) {
+            // 滑动时每帧都会回调,合并到下一次消息循环中处理
+            mVisibilityCheckPosted = true;
+            sMainHandler.post(mVisibilityCheckRunnable);
+        }
+    }
+
+    /**
+     * 停止播放并异步释放播放器,surface仍可继续使用
+     * 通过文件描述符设置的视频同时关闭内部持有的描述符副本,之后需重新设置
+     */
+    void release() {
+        clearDetachHold();
+        mDetachPaused = false;
+        MediaSource source = mSource;
+        if (source != null) {
+            source.close();
+        }
+        mState.setTargetState(STATE_IDLE);
+        mAutoPaused = false;
+        mPrefetcher.cancel();
+        releaseNextPlayer();
+        mSurfaceDestroyedRunnable.run();
+    }
+
+    /**
+     * 替换播放内核,对之后创建的播放器生效
+     */
+    void setEngineFactory(PlayerEngine.Factory factory) {
+        mEngineFactory = factory != null ? factory : MediaPlayerEngine.FACTORY;
+    }
+
+    void setAutoPlayOnVisible(boolean enabled) {
+        mAutoPlayOnVisible = enabled;
+        if (enabled) {
+            onVisibilityChanged();
+        } else {
+            mAutoPaused = false;
+        }
+    }
+
+    private final Runnable mVisibilityCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mVisibilityCheckPosted = false;
+            if (mTrimParked && mDecoderClient.getDecoderPriority() != PlaybackCoordinator.PRIORITY_HIDDEN) {
+                // 重新可见,从释放时的进度恢复;仍在释放中的话释放完成后自动加载
+                mTrimParked = false;
+                if (mState.getState() == STATE_IDLE) {
+                    reloadIfNeeded();
+                }
+            }
+            updateAutoPlay();
+        }
+    };
+
+    private final MemoryTrimmer.Listener mTrimListener = new MemoryTrimmer.Listener() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+    };
+
+    /**
+     * 内存不足: 先释放多占用的下一个播放器,更严重时释放不可见view的播放器,重新可见时再从原进度加载
+     */
+    private void trimMemory(int level) {
+        releaseNextPlayer();
+        mPrefetcher.cancel();
+        if (level >= MemoryTrimmer.LEVEL_BACKGROUND && !mTrimParked && mPlayer != null
+                && mDecoderClient.getDecoderPriority() == PlaybackCoordinator.PRIORITY_HIDDEN) {
+            mTrimParked = true;
+            parkDecoder();
+            // 不可见期间不再申请解码器配额
+            mCoordinator.cancel(mDecoderClient);
+        }
+    }
+
+    /**
+     * 离开屏幕时暂停,重新可见时继续播放;调用者主动暂停的视频不会自动播放
+     */
+    private void updateAutoPlay() {
+        if (!mAutoPlayOnVisible) {
+            return;
+        }
+        boolean visible = isMostlyVisible();
+        if (!visible && mState.getTargetState() == STATE_PLAYING) {
+            pause();
+            mAutoPaused = true;
+        } else if (visible && mAutoPaused) {
+            mAutoPaused = false;
+            start();
+        }
+    }
+
+    /**
+     * 可见面积是否超过 {@link #AUTO_PLAY_VISIBLE_PERCENT}
+     */
+    private boolean isMostlyVisible() {
+        if (mView.getWindowVisibility() != View.VISIBLE || !mView.isShown()
+                || !mView.getGlobalVisibleRect(mVisibleRect)) {
+            return false;
+        }
+        long area = (long) mView.getWidth() * mView.getHeight();
+        long visibleArea = (long) mVisibleRect.width() * mVisibleRect.height();
+        return area > 0 && visibleArea * 100 >= area * AUTO_PLAY_VISIBLE_PERCENT;
+    }
+
+    // 滑动列表时可见性会变化,重新分配解码器配额
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    onVisibilityChanged();
+                }
+            };
+
+    private final PlaybackCoordinator.Client mDecoderClient = new PlaybackCoordinator.Client() {
+        @Override
+        public int getDecoderPriority() {
+            if (mView.getWindowVisibility() != View.VISIBLE || !mView.isShown()
+                    || !mView.getGlobalVisibleRect(mVisibleRect)) {
+                return PlaybackCoordinator.PRIORITY_HIDDEN;
+            }
+            return mView.hasFocus() ? PlaybackCoordinator.PRIORITY_FOCUSED : PlaybackCoordinator.PRIORITY_VISIBLE;
+        }
+
+        @Override
+        public void onParkDecoder() {
+            parkDecoder();
+        }
+
+        @Override
+        public void onRestoreDecoder() {
+            // 仍在释放中的话,释放完成后会自动重新加载
+            if (mDecoderParked && mState.getState() == STATE_IDLE) {
+                reloadIfNeeded();
+            }
+        }
+
+        @Override
+        public void onRevokeExtraDecoder() {
+            releaseNextPlayer();
+        }
+    };
+
+    /**
+     * 解码器配额被抢占: 记录播放进度后释放播放器,重新获得配额时从该进度恢复
+     */
+    private void parkDecoder() {
+        int target = mState.getTargetState();
+        mDecoderParked = target != STATE_IDLE && target != STATE_ERROR;
+        PlayerEngine player = mPlayer;
+        if (player != null && mState.isInPlaybackState()) {
+            mResumePosition = player.getCurrentPosition();
+        } else if (!mRecovering) {
+            mResumePosition = mSeekWhenPrepared;
+        }
+        if (!mDecoderParked) {
+            mCoordinator.cancel(mDecoderClient);
+        }
+        releaseNextPlayer();
+        releasePlayerAsync();
+    }
+
+    /**
+     * 进行异步释放mediaPlayer,这是小米pad上anr的主要问题
+     * 释放时reset后归还到 {@link MediaPlayerPool} 中,而非直接release
+     * 释放完成后在 {@link #onPlayerCommandComplete} 中按需重新加载
+     */
+    private void releasePlayerAsync() {
+        clearRetention();
+        clearBufferWait();
+        stopClock();
+        if (mState.getState() == STATE_RELEASING) {
+            Log.i(TAG, "正在releasePlayerAsync,return...");
+            return;
+        }
+
+        PlayerEngine player = mPlayer;
+        if (player == null) {
+            // 没有需要释放的播放器,直接按需加载
+            if (mState.transitionTo(STATE_IDLE)) {
+                reloadIfNeeded();
+            }
+            return;
+        }
+
+        boolean stopFirst = mState.isInPlaybackState();
+        if (!mState.transitionTo(STATE_RELEASING)) {
+            return;
+        }
+        mPlayer = null;
+        mSeekScheduler.reset();
+        mReleasingPlayer = player;
+        mPrefetcher.setPaused(true);
+        mCommandQueue.release(player, stopFirst, mState.getGeneration());
+    }
+
+    /**
+     * 如果用户重新设置视频链接，则在释放后重新加载
+     * 被抢占了解码器配额的view在重新获得配额后也从这里恢复
+     * 因不可见而自动暂停的视频也提前加载,可见时直接开始播放
+     */
+    private void reloadIfNeeded() {
+        if (mTrimParked) {
+            return;
+        }
+        if ((mState.getTargetState() == STATE_PLAYING || mDecoderParked || mRecovering || mAutoPaused)
+                && mSurfaceCreated && !TextUtils.isEmpty(mVideoUrl)) {
+            if (!mCoordinator.request(mDecoderClient)) {
+                // 配额不足,等待 onRestoreDecoder
+                mDecoderParked = true;
+                return;
+            }
+            if (mDecoderParked || mRecovering) {
+                mDecoderParked = false;
+                if (mResumePosition > 0) {
+                    mSeekWhenPrepared = mResumePosition;
+                    mResumePosition = 0;
+                }
+            }
+            initPlayer();
+            mCoordinator.onAcquired(mDecoderClient);
+            resetPlayerUrl();
+        }
+    }
+
+    /**
+     * 子线程中的播放器操作执行完毕,主线程回调
+     */
+    private void onPlayerCommandComplete(PlayerCommandQueue.Command cmd, Throwable error) {
+        if (cmd.type == PlayerCommandQueue.CMD_RELEASE) {
+            // 预加载播放器或已切换掉的播放器释放完成,不影响当前状态
+            if (cmd.player != mReleasingPlayer) {
+                return;
+            }
+            mReleasingPlayer = null;
+            mMetrics.onReleased(cmd.enqueueTime);
+            mCoordinator.onReleased(mDecoderClient);
+            // 释放期间可能已切换过视频,此时按最新的地址重新加载
+            if (mState.compareAndSet(STATE_RELEASING, STATE_IDLE)) {
+                reloadIfNeeded();
+            }
+            return;
+        }
+
+        if (error != null && cmd.player == mNextPlayer) {
+            releaseNextPlayer();
+            return;
+        }
+
+        if (error == null && cmd.player == mPlayer && mState.isCurrent(cmd.generation)
+                && (cmd.type == PlayerCommandQueue.CMD_START || cmd.type == PlayerCommandQueue.CMD_PAUSE)) {
+            // 播放/暂停已生效,重新校准进度时钟
+            syncClock();
+            if (cmd.type == PlayerCommandQueue.CMD_START
+                    && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                // 4.2以下没有首帧回调,以开始播放近似
+                mTarget.onFirstFrame();
+            }
+            return;
+        }
+
+        // 旧视频的执行结果直接忽略
+        if (error == null || !mState.isCurrent(cmd.generation) || cmd.player != mPlayer) {
+            return;
+        }
+
+        if (cmd.type == PlayerCommandQueue.CMD_SEEK || cmd.type == PlayerCommandQueue.CMD_SEEK_PREVIEW) {
+            // seek失败不会有onSeekComplete回调,直接执行下一个
+            onSeekFinished();
+        }
+
+        Log.e(TAG, "onPlayerCommandComplete cmd " + cmd.type + " error " + error.getMessage());
+        if (cmd.type == PlayerCommandQueue.CMD_PREPARE
+                && mState.transitionTo(cmd.generation, STATE_ERROR)) {
+            emitEvent(PlayerEvent.TYPE_ERROR, MediaPlayer.MEDIA_ERROR_UNKNOWN,
+                    error instanceof IOException ? MediaPlayer.MEDIA_ERROR_IO : 0);
+            if (PlaybackRecovery.isRecoverable(error, mVideoUrl) && scheduleRecovery()) {
+                return;
+            }
+            mState.setTargetState(STATE_ERROR);
+        }
+    }
+
+    /**
+     * 出错后按退避间隔安排一次重新加载,无网络时等网络恢复后再重试
+     *
+     * @return 不再重试时返回false
+     */
+    private boolean scheduleRecovery() {
+        int target = mState.getTargetState();
+        if ((target != STATE_PLAYING && target != STATE_PAUSED) || !mRecovery.hasRetriesLeft()) {
+            stopRecovery();
+            return false;
+        }
+
+        mRecovering = true;
+        mResumePosition = mLastPosition;
+        sMainHandler.removeCallbacks(mRecoveryRunnable);
+        if (isNetworkAvailable()) {
+            long delay = mRecovery.nextDelay();
+            Log.i(TAG, "recover attempt " + mRecovery.getAttempt() + " in " + delay + "ms");
+            sMainHandler.postDelayed(mRecoveryRunnable, delay);
+        } else {
+            registerNetworkReceiver();
+        }
+        return true;
+    }
+
+    private final Runnable mRecoveryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRecovering) {
+                return;
+            }
+            if (!isNetworkAvailable()) {
+                registerNetworkReceiver();
+                return;
+            }
+            // 释放出错的播放器,释放完成后在reloadIfNeeded中从mResumePosition重新加载
+            releaseNextPlayer();
+            releasePlayerAsync();
+        }
+    };
+
+    /**
+     * 加载新视频时重新计算重试次数
+     */
+    private void resetRecovery() {
+        mRecovery.reset();
+        mRecoveryCheckpoint = -1;
+    }
+
+    /**
+     * 自动恢复后播放已越过出错位置一段时间,认为恢复成功,重新计算重试次数
+     */
+    private void checkRecoveryProgress(int position) {
+        if (mRecoveryCheckpoint >= 0 && position >= mRecoveryCheckpoint + RECOVERY_STABLE_MS) {
+            resetRecovery();
+        }
+    }
+
+    private void stopRecovery() {
+        mRecovering = false;
+        sMainHandler.removeCallbacks(mRecoveryRunnable);
+        unregisterNetworkReceiver();
+    }
+
+    /**
+     * 没有网络状态权限时认为网络可用
+     */
+    private boolean isNetworkAvailable() {
+        Context context = mView.getContext();
+        if (context.checkCallingOrSelfPermission(Manifest.permission.ACCESS_NETWORK_STATE)
+                != PackageManager.PERMISSION_GRANTED) {
+            return true;
+        }
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = cm == null ? null : cm.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
+    private void registerNetworkReceiver() {
+        if (!mNetworkReceiverRegistered) {
+            mNetworkReceiverRegistered = true;
+            mView.getContext().getApplicationContext().registerReceiver(mNetworkReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+    }
+
+    private void unregisterNetworkReceiver() {
+        if (mNetworkReceiverRegistered) {
+            mNetworkReceiverRegistered = false;
+            mView.getContext().getApplicationContext().unregisterReceiver(mNetworkReceiver);
+        }
+    }
+
+    /**
+     * 网络恢复后随机延迟一段时间再重连,避免同一网络下的设备同时请求
+     */
+    private final BroadcastReceiver mNetworkReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (mRecovering && isNetworkAvailable()) {
+                unregisterNetworkReceiver();
+                sMainHandler.removeCallbacks(mRecoveryRunnable);
+                sMainHandler.postDelayed(mRecoveryRunnable, mRecovery.reconnectDelay());
+            }
+        }
+    };
+
+    /**
+     * 缩放模式,取值见 BaseVideoView.SCALE_*
+     */
+    void setScaleMode(int scaleMode) {
+        if (scaleMode == mScaleMode) {
+            return;
+        }
+        mScaleMode = scaleMode;
+        mView.requestLayout();
+        PlayerEngine player = mPlayer;
+        if (player != null && mVideoWidth != 0 && mVideoHeight != 0) {
+            mTarget.applyScaleMode(player, mScaleMode, mVideoWidth, mVideoHeight);
+        }
+    }
+
+    int getScaleMode() {
+        return mScaleMode;
+    }
+
+    int getVideoWidth() {
+        return mVideoWidth;
+    }
+
+    int getVideoHeight() {
+        return mVideoHeight;
+    }
+
+    /**
+     * 视频尺寸变化,在prepare完成及尺寸变化回调中调用
+     * 宽高比不变时(如自适应码率切换分辨率)只通知RenderTarget缩放画面,不重新layout
+     */
+    private void updateVideoSize(PlayerEngine mp) {
+        mVideoWidth = mp.getVideoWidth();
+        mVideoHeight = mp.getVideoHeight();
+        if (mVideoWidth == 0 || mVideoHeight == 0) {
+            return;
+        }
+        if ((long) mVideoWidth * mLayoutVideoHeight != (long) mVideoHeight * mLayoutVideoWidth) {
+            mLayoutVideoWidth = mVideoWidth;
+            mLayoutVideoHeight = mVideoHeight;
+            mView.requestLayout();
+        }
+        mTarget.applyScaleMode(mp, mScaleMode, mVideoWidth, mVideoHeight);
+        emitEvent(PlayerEvent.TYPE_VIDEO_SIZE_CHANGED, mVideoWidth, mVideoHeight);
+    }
+
+    /**
+     * 根据缩放模式一次算出view尺寸,视频尺寸取 {@link #mLayoutVideoWidth},同比例的分辨率变化结果不变
+     * SCALE_FIT: 在给定范围内按视频比例取最大尺寸,原VideoView的逻辑
+     * SCALE_FILL: 宽度占满,高度按比例,超出限制时截取
+     * SCALE_CROP / SCALE_STRETCH: 占满给定范围,画面分别按比例裁剪/拉伸
+     *
+     * @param out 测量结果,依次为宽,高
+     */
+    void measure(int widthMeasureSpec, int heightMeasureSpec, int[] out) {
+        int videoWidth = mLayoutVideoWidth;
+        int videoHeight = mLayoutVideoHeight;
+        int width = View.getDefaultSize(videoWidth, widthMeasureSpec);
+        int height = View.getDefaultSize(videoHeight, heightMeasureSpec);
+        if (videoWidth > 0 && videoHeight > 0) {
+
+            int widthSpecMode = View.MeasureSpec.getMode(widthMeasureSpec);
+            int widthSpecSize = View.MeasureSpec.getSize(widthMeasureSpec);
+            int heightSpecMode = View.MeasureSpec.getMode(heightMeasureSpec);
+            int heightSpecSize = View.MeasureSpec.getSize(heightMeasureSpec);
+
+            switch (mScaleMode) {
+                case BaseVideoView.SCALE_CROP:
+                case BaseVideoView.SCALE_STRETCH:
+                    // 直接使用getDefaultSize的结果
+                    break;
+                case BaseVideoView.SCALE_FILL:
+                    height = (int) ((long) width * videoHeight / videoWidth);
+                    if (heightSpecMode == View.MeasureSpec.EXACTLY
+                            || (heightSpecMode == View.MeasureSpec.AT_MOST && height > heightSpecSize)) {
+                        height = heightSpecSize;
+                    }
+                    break;
+                default:
+                    if (widthSpecMode == View.MeasureSpec.EXACTLY && heightSpecMode == View.MeasureSpec.EXACTLY) {
+                        // the size is fixed
+                        width = widthSpecSize;
+                        height = heightSpecSize;
+
+                        // for compatibility, we adjust size based on aspect ratio
+                        if ((long) videoWidth * height < (long) width * videoHeight) {
+                            width = height * videoWidth / videoHeight;
+                        } else if ((long) videoWidth * height > (long) width * videoHeight) {
+                            height = width * videoHeight / videoWidth;
+                        }
+                    } else if (widthSpecMode == View.MeasureSpec.EXACTLY) {
+                        // only the width is fixed, adjust the height to match aspect ratio if possible
+                        width = widthSpecSize;
+                        height = width * videoHeight / videoWidth;
+                        if (heightSpecMode == View.MeasureSpec.AT_MOST && height > heightSpecSize) {
+                            // couldn't match aspect ratio within the constraints
+                            height = heightSpecSize;
+                        }
+                    } else if (heightSpecMode == View.MeasureSpec.EXACTLY) {
+                        // only the height is fixed, adjust the width to match aspect ratio if possible
+                        height = heightSpecSize;
+                        width = height * videoWidth / videoHeight;
+                        if (widthSpecMode == View.MeasureSpec.AT_MOST && width > widthSpecSize) {
+                            // couldn't match aspect ratio within the constraints
+                            width = widthSpecSize;
+                        }
+                    } else {
+                        // neither the width nor the height are fixed, try to use actual video size
+                        width = videoWidth;
+                        height = videoHeight;
+                        if (heightSpecMode == View.MeasureSpec.AT_MOST && height > heightSpecSize) {
+                            // too tall, decrease both width and height
+                            height = heightSpecSize;
+                            width = height * videoWidth / videoHeight;
+                        }
+                        if (widthSpecMode == View.MeasureSpec.AT_MOST && width > widthSpecSize) {
+                            // too wide, decrease both width and height
+                            width = widthSpecSize;
+                            height = width * videoHeight / videoWidth;
+                        }
+                    }
+                    break;
+            }
+        } else {
+            // no size yet, just adopt the given spec sizes
+        }
+        out[0] = width;
+        out[1] = height;
+    }
+
+    /**
+     * 当前播放器的回调,已释放的播放器或旧视频的回调在各方法中丢弃
+     */
+    private final PlayerEngine.Listener mEngineListener = new PlayerEngine.Listener() {
+        @Override
+        public void onPrepared(PlayerEngine engine) {
+            onEnginePrepared(engine);
+        }
+
+        @Override
+        public void onCompletion(PlayerEngine engine) {
+            onEngineCompletion(engine);
+        }
+
+        @Override
+        public void onBufferingUpdate(PlayerEngine engine, int percent) {
+            onEngineBufferingUpdate(engine, percent);
+        }
+
+        @Override
+        public void onSeekComplete(PlayerEngine engine) {
+            onEngineSeekComplete(engine);
+        }
+
+        @Override
+        public void onVideoSizeChanged(PlayerEngine engine, int width, int height) {
+            if (engine == mPlayer) {
+                updateVideoSize(engine);
+            }
+        }
+
+        @Override
+        public boolean onError(PlayerEngine engine, int what, int extra) {
+            return onEngineError(engine, what, extra);
+        }
+
+        @Override
+        public boolean onInfo(PlayerEngine engine, int what, int extra) {
+            return onEngineInfo(engine, what, extra);
+        }
+    };
+
+    private void onEngineBufferingUpdate(PlayerEngine mp, int percent) {
+        if (mp != mPlayer) {
+            return;
+        }
+        //                    Log.i(TAG, "onBufferingUpdate " + percent);
+        // 这里有坑 o_O ,第一次回调的时候percent是100 （>﹏<）
+        // 所以 mCurrentBufferPercentage 初值设置为负值,并在这里过滤掉第一次的回调值
+        if (mCurrentBufferPercentage < 0 && percent >= 100) {
+            percent = 0;
+        }
+        mCurrentBufferPercentage = percent;
+        emitEvent(PlayerEvent.TYPE_BUFFERING_UPDATE, percent, 0);
+        if (mState.getState() == STATE_PLAYING) {
+            mLastPosition = mp.getCurrentPosition();
+        }
+        int duration = mp.getDuration();
+        if (duration > 0) {
+            mBandwidth.addSample(SystemClock.elapsedRealtime(), (long) duration * percent / 100);
+        }
+        if (mWaitingForBuffer && isBufferSufficient(mp)) {
+            endBufferWait();
+        }
+        updatePrefetchPaused();
+    }
+
+    void setOnPreparedListener(MediaPlayer.OnPreparedListener l) {
+        mOnPreparedListener = l;
+    }
+
+    /**
+     * 设置异常发生,回调接口
+     */
+    void setOnErrorListener(MediaPlayer.OnErrorListener l) {
+        mOnErrorListener = l;
+    }
+
+    void setOnCompletionListener(MediaPlayer.OnCompletionListener l) {
+        mOnCompletionListener = l;
+    }
+
+    private void onEnginePrepared(PlayerEngine mp) {
+        // 已释放的播放器或旧视频的回调直接丢弃
+        if (mp != mPlayer || !mState.compareAndSet(STATE_PREPARING, STATE_PREPARED)) {
+            return;
+        }
+        onPlayerPrepared(mp);
+    }
+
+    /**
+     * 播放器已进入prepared状态,正常加载完成或切换到预加载的播放器后调用
+     */
+    private void onPlayerPrepared(PlayerEngine mp) {
+        mMetrics.onPrepared();
+        if (mRecovering) {
+            // 重新加载成功,播放越过出错位置后才算恢复成功,见 checkRecoveryProgress
+            stopRecovery();
+            mRecoveryCheckpoint = mResumePosition;
+        }
+
+        // 按视频比例调整view尺寸及画面缩放
+        updateVideoSize(mp);
+
+        mClock.setDuration(mp.getDuration());
+        syncClock();
+
+        // 初始设置时要求直接播放,设置了起播策略时等缓冲足够后再播放
+        if (mState.getTargetState() == STATE_PLAYING) {
+            if (isStartPolicyEnabled() && !isBufferSufficient(mp)) {
+                beginBufferWait();
+            } else if (mState.compareAndSet(STATE_PREPARED, STATE_PLAYING)) {
+                mCommandQueue.start(mp, mState.getGeneration());
+            }
+        }
+
+        /**
+         *  TODO: 2016/10/13 这里是不是也得判断下网络啊?
+         *  videoView直接就seekTo,网络异常又还未缓冲到点时应该会anr
+         *  但是其实也很难避免seekTo时网络是好的,我在红米1s上测试就是断网后还要延迟一下才会收到消息
+         *  这时候去拖拽进度条仍会触发seekTo
+         * */
+        if (mSeekWhenPrepared > 0) {
+            seekTo(mSeekWhenPrepared);
+        }
+
+        // 反馈给调用者,mPlayer已经加载成功
+        if (mOnPreparedListener != null) {
+            mOnPreparedListener.onPrepared(MediaPlayerEngine.unwrap(mPlayer));
+        }
+
+        if (isSingleItemLoop()) {
+            mCommandQueue.setLooping(mp, true, mState.getGeneration());
+        }
+
+        // 当前视频已加载,开始准备播放列表中的后续视频
+        if (mPlaylistIndex >= 0 && mPrefetchCount > 0) {
+            mPrefetcher.prefetch(VideoPrefetcher.window(mPlaylist, mPlaylistIndex + 1, mPrefetchCount));
+        }
+        prepareNextPlayer();
+    }
+
+    private boolean isStartPolicyEnabled() {
+        return (mStartMinBufferMs > 0 || mStartRateFactor > 0) && mSource == null
+                && PlaybackRecovery.isNetworkUrl(mVideoUrl);
+    }
+
+    /**
+     * 是否满足起播策略,无法获取时长(如直播)时直接认为满足
+     */
+    private boolean isBufferSufficient(PlayerEngine mp) {
+        int duration = mp.getDuration();
+        if (duration <= 0 || mCurrentBufferPercentage >= 100) {
+            return true;
+        }
+        long bufferedTo = (long) duration * Math.max(0, mCurrentBufferPercentage) / 100;
+        if (mStartMinBufferMs > 0 && bufferedTo - mp.getCurrentPosition() >= mStartMinBufferMs) {
+            return true;
+        }
+        float rate = mBandwidth.getRate();
+        return mStartRateFactor > 0 && rate >= mStartRateFactor;
+    }
+
+    private void beginBufferWait() {
+        mWaitingForBuffer = true;
+        sMainHandler.removeCallbacks(mBufferWaitTimeoutRunnable);
+        sMainHandler.postDelayed(mBufferWaitTimeoutRunnable, mStartMaxWaitMs);
+    }
+
+    private void clearBufferWait() {
+        if (mWaitingForBuffer) {
+            mWaitingForBuffer = false;
+            sMainHandler.removeCallbacks(mBufferWaitTimeoutRunnable);
+        }
+    }
+
+    /**
+     * 缓冲已足够或等待超时,开始(继续)播放
+     */
+    private void endBufferWait() {
+        clearBufferWait();
+        PlayerEngine player = mPlayer;
+        if (player == null || mState.getTargetState() != STATE_PLAYING) {
+            return;
+        }
+        if (mState.compareAndSet(STATE_PREPARED, STATE_PLAYING)
+                || mState.compareAndSet(STATE_PAUSED, STATE_PLAYING)) {
+            mCommandQueue.start(player, mState.getGeneration());
+        }
+    }
+
+    private final Runnable mBufferWaitTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mWaitingForBuffer) {
+                endBufferWait();
+            }
+        }
+    };
+
+    /**
+     * 首帧及卡顿信息,用于性能统计
+     */
+    private boolean onEngineInfo(PlayerEngine mp, int what, int extra) {
+        if (mp != mPlayer) {
+            return false;
+        }
+        switch (what) {
+            case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                mMetrics.onFirstFrame();
+                mTarget.onFirstFrame();
+                break;
+            case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                mMetrics.onBufferingStart();
+                emitEvent(PlayerEvent.TYPE_BUFFERING_START, 0, 0);
+                mBuffering = true;
+                syncClock();
+                // 卡顿时先暂停,缓冲足够后再继续,避免播一下卡一下
+                if (isStartPolicyEnabled() && mState.getTargetState() == STATE_PLAYING
+                        && mState.compareAndSet(STATE_PLAYING, STATE_PAUSED)) {
+                    mCommandQueue.pause(mp, mState.getGeneration());
+                    beginBufferWait();
+                }
+                break;
+            case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                mMetrics.onBufferingEnd();
+                emitEvent(PlayerEvent.TYPE_BUFFERING_END, 0, 0);
+                mBuffering = false;
+                syncClock();
+                break;
+            default:
+                break;
+        }
+        return false;
+    }
+
+    private void onEngineSeekComplete(PlayerEngine mp) {
+        if (mp != mPlayer) {
+            return;
+        }
+        onSeekFinished();
+    }
+
+    private void onSeekFinished() {
+        sMainHandler.removeCallbacks(mSeekTimeoutRunnable);
+        mSeekScheduler.onSeekComplete();
+        syncClock();
+        // 连续seek时统计从第一次请求到最后一次完成的耗时
+        if (!mSeekScheduler.isSeeking()) {
+            mMetrics.onSeekComplete();
+        }
+    }
+
+    /**
+     * 播放器错误回调
+     */
+    private boolean onEngineError(PlayerEngine mp, int what, int extra) {
+        Log.d(TAG, "Error: " + what + "," + extra);
+        if (mp != mPlayer) {
+            return true;
+        }
+        emitEvent(PlayerEvent.TYPE_ERROR, what, extra);
+        int position = mState.getState() == STATE_PLAYING ? mp.getCurrentPosition() : 0;
+        if (!mState.transitionTo(STATE_ERROR)) {
+            return true;
+        }
+        if (position > 0) {
+            mLastPosition = position;
+        }
+        // 网络类错误先自动恢复,重试次数用完后才通知调用者
+        String url = mSource == null ? mVideoUrl : null;
+        if (PlaybackRecovery.isRecoverable(what, extra, url) && scheduleRecovery()) {
+            return true;
+        }
+        mState.setTargetState(STATE_ERROR);
+        if (mOnErrorListener != null) {
+            if (mOnErrorListener.onError(MediaPlayerEngine.unwrap(mPlayer), what, extra)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 播放结束后通知调用者
+     */
+    private void onEngineCompletion(PlayerEngine mp) {
+        if (mp != mPlayer || !mState.transitionTo(STATE_PLAYBACK_COMPLETED)) {
+            return;
+        }
+        mState.setTargetState(STATE_PLAYBACK_COMPLETED);
+        syncClock();
+        // 无缝连播时直接切换到下一个视频,不通知调用者
+        // 此时旧播放器正在释放,新视频已开始播放,调用者对它们的操作只会干扰播放
+        if (mGaplessEnabled && mPlaylistIndex >= 0 && playNext()) {
+            return;
+        }
+        if (mOnCompletionListener != null) {
+            mOnCompletionListener.onCompletion(MediaPlayerEngine.unwrap(mp));
+        }
+    }
+
+
+}
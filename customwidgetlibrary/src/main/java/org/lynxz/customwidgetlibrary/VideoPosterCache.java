@@ -0,0 +1,492 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 视频封面(指定时刻的画面)提取及缓存
+ * 在子线程中通过 {@link MediaMetadataRetriever} 截取画面,按 url + 时刻 缓存到内存和磁盘两级LRU中,
+ * 再次使用时无需联网,也不再需要单独下载封面图片
+ * 磁盘中以jpeg保存,解码时通过 inBitmap 复用内存缓存淘汰下来的bitmap,滑动列表时减少大块内存分配
+ * 使用方式:
+ * VideoPosterCache posterCache = new VideoPosterCache(new File(context.getCacheDir(), "poster"), 20 * 1024 * 1024, 8 * 1024 * 1024);
+ * videoView.setPosterCache(posterCache);
+ */
+public class VideoPosterCache {
+
+    private static final String TAG = "VideoPosterCache";
+
+    private static final String FILE_SUFFIX = ".jpg";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int JPEG_QUALITY = 85;
+    private static final int THREAD_COUNT = 2;//同时提取的封面数,MediaMetadataRetriever会占用解码器和网络
+    private static final int MAX_REUSABLE_COUNT = 4;
+
+    /**
+     * 封面加载结果回调,在主线程中执行
+     */
+    public interface Callback {
+        /**
+         * poster只在回调期间保证不会被复用,回调之后仍要显示时需调用 {@link #retain(Bitmap)},
+         * 不再显示时调用 {@link #release(Bitmap)},否则被内存缓存淘汰后可能被 inBitmap 覆盖
+         *
+         * @param poster 提取失败(如纯音频,网络错误)时为null
+         */
+        void onPosterLoaded(String url, long timeMs, Bitmap poster);
+    }
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final ThreadPoolExecutor mExecutor;
+    private final File mCacheDir;
+    private final long mMaxDiskBytes;
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // 磁盘缓存索引,按访问顺序排列,首次使用时在子线程中加载
+    private final LinkedHashMap<File, Long> mLruFiles = new LinkedHashMap<>(32, 0.75f, true);
+    private long mTotalDiskBytes = 0;
+    private boolean mIndexLoaded = false;
+
+    // 正在加载的封面及等待结果的回调,同一封面只加载一次
+    private final HashMap<String, List<Callback>> mPending = new HashMap<>();
+
+    // 正在显示的bitmap的引用计数,被淘汰时仍在显示的bitmap不能复用
+    private final IdentityHashMap<Bitmap, Integer> mInUse = new IdentityHashMap<>();
+    private final IdentityHashMap<Bitmap, Boolean> mEvictedInUse = new IdentityHashMap<>();
+    // 可供 inBitmap 复用的bitmap
+    private final ArrayList<Bitmap> mReusable = new ArrayList<>();
+
+    /**
+     * @param cacheDir       磁盘缓存目录
+     * @param maxDiskBytes   磁盘缓存上限
+     * @param maxMemoryBytes 内存缓存上限
+     */
+    public VideoPosterCache(File cacheDir, long maxDiskBytes, int maxMemoryBytes) {
+        mCacheDir = cacheDir;
+        mMaxDiskBytes = maxDiskBytes;
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                onMemoryEntryRemoved(oldValue);
+            }
+        };
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "video-poster-" + mCount.getAndIncrement());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        MemoryTrimmer.getInstance().addListener(mTrimListener);
+    }
+
+    // 内存不足时先减半,更严重时清空内存缓存,之后按需从磁盘重新加载
+    private final MemoryTrimmer.Listener mTrimListener = new MemoryTrimmer.Listener() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= MemoryTrimmer.LEVEL_BACKGROUND) {
+                clearMemory();
+            } else {
+                mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+            }
+        }
+    };
+
+    /**
+     * 是否支持提取该地址的封面,目前支持在线视频及本地文件路径
+     */
+    public static boolean isSupported(String url) {
+        return url != null && (PlaybackRecovery.isNetworkUrl(url) || url.startsWith("/") || url.startsWith("file://"));
+    }
+
+    /**
+     * 只从内存缓存中获取,可在主线程中调用
+     */
+    public Bitmap getFromMemory(String url, long timeMs) {
+        return mMemoryCache.get(keyOf(url, timeMs));
+    }
+
+    /**
+     * 异步加载封面,依次从内存,磁盘中查找,都没有时从视频中提取
+     * 内存中已有时直接回调,回调之后继续持有的bitmap需调用 {@link #retain(Bitmap)}
+     *
+     * @param maxWidth 提取时封面的最大宽度,超出时等比缩小
+     */
+    public void load(final String url, final long timeMs, final int maxWidth, Callback callback) {
+        final String key = keyOf(url, timeMs);
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            if (callback != null) {
+                retain(cached);
+                callback.onPosterLoaded(url, timeMs, cached);
+                release(cached);
+            }
+            return;
+        }
+
+        synchronized (mPending) {
+            List<Callback> callbacks = mPending.get(key);
+            if (callbacks != null) {
+                if (callback != null) {
+                    callbacks.add(callback);
+                }
+                return;
+            }
+            callbacks = new ArrayList<>(1);
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            mPending.put(key, callbacks);
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap poster = loadInBackground(url, timeMs, key, maxWidth);
+                deliver(url, timeMs, key, poster);
+            }
+        });
+    }
+
+    /**
+     * 提前提取封面到缓存中,如列表数据加载完成后预热即将显示的视频
+     */
+    public void preload(List<String> urls, long timeMs, int maxWidth) {
+        for (String url : urls) {
+            if (isSupported(url)) {
+                load(url, timeMs, maxWidth, null);
+            }
+        }
+    }
+
+    /**
+     * 清空内存缓存,磁盘缓存保留
+     */
+    public void clearMemory() {
+        mMemoryCache.evictAll();
+        synchronized (mInUse) {
+            mReusable.clear();
+        }
+    }
+
+    /**
+     * 开始显示从 {@link #load} 或 {@link #getFromMemory} 得到的bitmap时调用,可重复调用,按次数计数
+     * 引用计数不为0的bitmap被内存缓存淘汰后不会被 inBitmap 复用,直到对应次数的 {@link #release(Bitmap)}
+     */
+    public void retain(Bitmap bitmap) {
+        synchronized (mInUse) {
+            Integer count = mInUse.get(bitmap);
+            mInUse.put(bitmap, count == null ? 1 : count + 1);
+            // 已被淘汰但还未被复用,取回来,release后再放回
+            if (mReusable.remove(bitmap)) {
+                mEvictedInUse.put(bitmap, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * 不再显示bitmap时调用,与 {@link #retain(Bitmap)} 成对使用,未retain的bitmap忽略
+     */
+    public void release(Bitmap bitmap) {
+        synchronized (mInUse) {
+            Integer count = mInUse.get(bitmap);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                mInUse.put(bitmap, count - 1);
+                return;
+            }
+            mInUse.remove(bitmap);
+            if (mEvictedInUse.remove(bitmap) != null) {
+                addReusableLocked(bitmap);
+            }
+        }
+    }
+
+    private void onMemoryEntryRemoved(Bitmap bitmap) {
+        synchronized (mInUse) {
+            if (mInUse.containsKey(bitmap)) {
+                mEvictedInUse.put(bitmap, Boolean.TRUE);
+            } else {
+                addReusableLocked(bitmap);
+            }
+        }
+    }
+
+    private void addReusableLocked(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        if (mReusable.size() >= MAX_REUSABLE_COUNT) {
+            mReusable.remove(0);
+        }
+        mReusable.add(bitmap);
+    }
+
+    /**
+     * 取出一个可以用于解码 width * height 的bitmap
+     * 4.4及以上只要内存足够即可复用,之前的系统要求尺寸完全相同
+     */
+    private Bitmap takeReusable(int width, int height) {
+        synchronized (mInUse) {
+            Iterator<Bitmap> it = mReusable.iterator();
+            while (it.hasNext()) {
+                Bitmap candidate = it.next();
+                boolean fits;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                    fits = candidate.getAllocationByteCount() >= width * height * 2
+                            && candidate.getConfig() == Bitmap.Config.RGB_565;
+                } else {
+                    fits = candidate.getWidth() == width && candidate.getHeight() == height;
+                }
+                if (fits) {
+                    it.remove();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Bitmap loadInBackground(String url, long timeMs, String key, int maxWidth) {
+        loadIndexIfNeeded();
+        File file = fileOf(key);
+        Bitmap poster = decodeFile(file);
+        if (poster != null) {
+            synchronized (this) {
+                mLruFiles.get(file);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return poster;
+        }
+
+        Bitmap frame = extractFrame(url, timeMs, maxWidth);
+        if (frame == null) {
+            return null;
+        }
+        // 写入磁盘后重新解码,统一为RGB_565并复用已有bitmap
+        if (writeFile(file, frame)) {
+            poster = decodeFile(file);
+        }
+        return poster != null ? poster : frame;
+    }
+
+    private static Bitmap extractFrame(String url, long timeMs, int maxWidth) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            if (PlaybackRecovery.isNetworkUrl(url)) {
+                retriever.setDataSource(url, new HashMap<String, String>());
+            } else {
+                retriever.setDataSource(url.startsWith("file://") ? url.substring("file://".length()) : url);
+            }
+            Bitmap frame = retriever.getFrameAtTime(timeMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame != null && maxWidth > 0 && frame.getWidth() > maxWidth) {
+                int height = (int) ((long) frame.getHeight() * maxWidth / frame.getWidth());
+                Bitmap scaled = Bitmap.createScaledBitmap(frame, maxWidth, Math.max(1, height), true);
+                if (scaled != frame) {
+                    frame.recycle();
+                }
+                frame = scaled;
+            }
+            return frame;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "extractFrame error " + url + " " + e.getMessage());
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (RuntimeException ignore) {
+            }
+        }
+    }
+
+    private Bitmap decodeFile(File file) {
+        synchronized (this) {
+            if (!mLruFiles.containsKey(file)) {
+                return null;
+            }
+        }
+        String path = file.getAbsolutePath();
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+            return null;
+        }
+
+        opts.inJustDecodeBounds = false;
+        opts.inMutable = true;
+        opts.inPreferredConfig = Bitmap.Config.RGB_565;//封面不透明,内存减半
+        opts.inBitmap = takeReusable(opts.outWidth, opts.outHeight);
+        try {
+            return BitmapFactory.decodeFile(path, opts);
+        } catch (IllegalArgumentException e) {
+            // 复用失败,重新分配
+            opts.inBitmap = null;
+            return BitmapFactory.decodeFile(path, opts);
+        }
+    }
+
+    /**
+     * 先写临时文件再重命名,保证读到的文件一定是完整的
+     */
+    private boolean writeFile(File file, Bitmap bitmap) {
+        mCacheDir.mkdirs();
+        File tmp = new File(mCacheDir, file.getName() + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        FileOutputStream out = null;
+        boolean written;
+        try {
+            out = new FileOutputStream(tmp);
+            written = bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            written = false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        if (!written || !tmp.renameTo(file)) {
+            tmp.delete();
+            return false;
+        }
+
+        synchronized (this) {
+            Long old = mLruFiles.put(file, file.length());
+            mTotalDiskBytes += file.length() - (old != null ? old : 0);
+        }
+        trimDiskCache();
+        return true;
+    }
+
+    /**
+     * 扫描已有封面,按最后修改时间恢复LRU顺序
+     */
+    private void loadIndexIfNeeded() {
+        synchronized (this) {
+            if (mIndexLoaded) {
+                return;
+            }
+            mIndexLoaded = true;
+
+            File[] files = mCacheDir.listFiles();
+            if (files == null) {
+                return;
+            }
+            List<File> posters = new ArrayList<>();
+            for (File f : files) {
+                if (f.getName().endsWith(FILE_SUFFIX)) {
+                    posters.add(f);
+                } else if (f.getName().endsWith(TMP_SUFFIX)) {
+                    f.delete();
+                }
+            }
+            File[] sorted = posters.toArray(new File[posters.size()]);
+            Arrays.sort(sorted, new Comparator<File>() {
+                @Override
+                public int compare(File lhs, File rhs) {
+                    long l = lhs.lastModified();
+                    long r = rhs.lastModified();
+                    return l < r ? -1 : (l == r ? 0 : 1);
+                }
+            });
+            for (File f : sorted) {
+                long len = f.length();
+                mLruFiles.put(f, len);
+                mTotalDiskBytes += len;
+            }
+        }
+        trimDiskCache();
+    }
+
+    private void trimDiskCache() {
+        List<File> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<File, Long>> it = mLruFiles.entrySet().iterator();
+            while (mTotalDiskBytes > mMaxDiskBytes && it.hasNext()) {
+                Map.Entry<File, Long> entry = it.next();
+                mTotalDiskBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                it.remove();
+            }
+        }
+        for (File f : evicted) {
+            f.delete();
+        }
+    }
+
+    private void deliver(final String url, final long timeMs, String key, final Bitmap poster) {
+        // 放入内存缓存后可能立即被淘汰,先持有引用,避免回调之前被其他解码复用
+        if (poster != null) {
+            retain(poster);
+            mMemoryCache.put(key, poster);
+        }
+        final List<Callback> callbacks;
+        synchronized (mPending) {
+            callbacks = mPending.remove(key);
+        }
+        if (callbacks == null || callbacks.isEmpty()) {
+            if (poster != null) {
+                release(poster);
+            }
+            return;
+        }
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onPosterLoaded(url, timeMs, poster);
+                }
+                if (poster != null) {
+                    release(poster);
+                }
+            }
+        });
+    }
+
+    private File fileOf(String key) {
+        return new File(mCacheDir, SegmentCache.md5(key) + FILE_SUFFIX);
+    }
+
+    private static String keyOf(String url, long timeMs) {
+        return url + "#" + timeMs;
+    }
+}
@@ -0,0 +1,251 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Created by zxz on 2026/10/18.
+ * description : 播放列表预加载
+ * 通过 {@link VideoCacheProxy} 预先下载后续视频的开头部分,下一个视频可直接从本地缓存开始播放
+ * 为避免抢占当前视频的带宽:
+ * 1. 全局只有一个预加载线程,同一时刻只下载一个视频
+ * 2. 下载速度受 {@link #setMaxBytesPerSecond(long)} 限制
+ * 3. 当前视频缓冲不足时调用 {@link #setPaused(boolean)} 暂停预加载
+ * 预加载线程由所有view共用,暂停时不在线程中等待:正在下载的视频放回队首并让出线程,
+ * 恢复时重新调度,已写入缓存的分段不会重复下载
+ */
+class VideoPrefetcher {
+
+    private static final String TAG = "VideoPrefetcher";
+
+    static final long DEFAULT_PREFETCH_BYTES = 512 * 1024;
+    static final long DEFAULT_MAX_BYTES_PER_SECOND = 512 * 1024;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "video-prefetch");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private final LinkedList<String> mPending = new LinkedList<>();
+    private volatile VideoCacheProxy mProxy;
+    private volatile long mPrefetchBytes = DEFAULT_PREFETCH_BYTES;
+    private volatile long mMaxBytesPerSecond = DEFAULT_MAX_BYTES_PER_SECOND;
+    private boolean mPaused = true;
+    private boolean mRunning = false;
+    private boolean mCancelled = false;//终止正在进行的预加载
+
+    void setProxy(VideoCacheProxy proxy) {
+        mProxy = proxy;
+    }
+
+    /**
+     * 每个视频预加载的字节数,会向上取整到缓存分段大小
+     */
+    void setPrefetchBytes(long bytes) {
+        mPrefetchBytes = Math.max(0, bytes);
+    }
+
+    /**
+     * 预加载限速,0表示不限速
+     */
+    void setMaxBytesPerSecond(long bytesPerSecond) {
+        mMaxBytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * 替换待预加载的视频列表,正在下载的视频不受影响
+     */
+    void prefetch(List<String> urls) {
+        synchronized (mPending) {
+            mPending.clear();
+            mCancelled = false;
+            if (urls != null) {
+                mPending.addAll(urls);
+            }
+            if (!scheduleLocked()) {
+                return;
+            }
+        }
+        sExecutor.execute(mPrefetchRunnable);
+    }
+
+    /**
+     * 未暂停且有待预加载的视频时标记为运行中,需持有mPending锁
+     *
+     * @return 是否需要提交到预加载线程
+     */
+    private boolean scheduleLocked() {
+        if (mRunning || mPaused || mPending.isEmpty()) {
+            return false;
+        }
+        mRunning = true;
+        return true;
+    }
+
+    /**
+     * 清空列表并终止正在进行的预加载
+     */
+    void cancel() {
+        synchronized (mPending) {
+            mPending.clear();
+            mCancelled = true;
+        }
+    }
+
+    /**
+     * 当前视频缓冲不足时暂停预加载,避免抢占带宽
+     */
+    void setPaused(boolean paused) {
+        synchronized (mPending) {
+            if (mPaused == paused) {
+                return;
+            }
+            mPaused = paused;
+            if (!scheduleLocked()) {
+                return;
+            }
+        }
+        sExecutor.execute(mPrefetchRunnable);
+    }
+
+    private final Runnable mPrefetchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                String url;
+                synchronized (mPending) {
+                    url = mPaused ? null : mPending.poll();
+                    if (url == null) {
+                        mRunning = false;
+                        return;
+                    }
+                }
+
+                VideoCacheProxy proxy = mProxy;
+                if (proxy == null || !proxy.isRunning()) {
+                    continue;
+                }
+
+                try {
+                    prefetchOne(proxy, url);
+                } catch (IOException e) {
+                    Log.w(TAG, "prefetch " + url + " error " + e.getMessage());
+                } catch (InterruptedException e) {
+                    synchronized (mPending) {
+                        mRunning = false;
+                    }
+                    return;
+                }
+            }
+        }
+    };
+
+    /**
+     * 通过代理读取视频开头部分,代理在转发的同时会写入缓存
+     */
+    private void prefetchOne(VideoCacheProxy proxy, String url) throws IOException, InterruptedException {
+        int segments = (int) ((mPrefetchBytes + SegmentCache.SEGMENT_SIZE - 1) / SegmentCache.SEGMENT_SIZE);
+        if (segments <= 0 || allCached(proxy, url, segments)) {
+            return;
+        }
+
+        long target = (long) segments * SegmentCache.SEGMENT_SIZE;
+        HttpURLConnection conn = (HttpURLConnection) new URL(proxy.getProxyUrl(url)).openConnection();
+        InputStream in = null;
+        try {
+            in = conn.getInputStream();
+            byte[] buf = new byte[16 * 1024];
+            long read = 0;
+            long windowStart = System.currentTimeMillis();
+            long windowBytes = 0;
+            while (read < target) {
+                if (yieldIfPaused(url)) {
+                    return;
+                }
+                int n = in.read(buf, 0, (int) Math.min(buf.length, target - read));
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+                windowBytes += n;
+
+                // 简单限速,每秒下载量不超过上限
+                long limit = mMaxBytesPerSecond;
+                if (limit > 0 && windowBytes >= limit) {
+                    long elapsed = System.currentTimeMillis() - windowStart;
+                    if (elapsed < 1000) {
+                        Thread.sleep(1000 - elapsed);
+                    }
+                    windowStart = System.currentTimeMillis();
+                    windowBytes = 0;
+                }
+            }
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+            }
+            conn.disconnect();
+        }
+    }
+
+    private static boolean allCached(VideoCacheProxy proxy, String url, int segments) {
+        SegmentCache cache = proxy.getCache();
+        for (int i = 0; i < segments; i++) {
+            if (!cache.hasSegment(url, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 暂停时将视频放回队首,由调用方结束下载并让出共享的预加载线程
+     *
+     * @return 是否已暂停
+     */
+    private boolean yieldIfPaused(String url) throws IOException {
+        synchronized (mPending) {
+            if (mCancelled) {
+                throw new IOException("cancelled");
+            }
+            if (mPaused) {
+                mPending.addFirst(url);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 截取列表中从start开始的count个地址
+     */
+    static List<String> window(List<String> list, int start, int count) {
+        List<String> result = new ArrayList<>();
+        if (list == null) {
+            return result;
+        }
+        for (int i = start; i < list.size() && result.size() < count; i++) {
+            if (i >= 0) {
+                result.add(list.get(i));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,295 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+/**
+ * 内存中的播放内核,模拟prepare耗时,缓冲进度曲线,错误及缓慢的stop/release,用于在jvm上测试播放器切换
+ * 耗时及回调都在 {@link VirtualThreads} 的虚拟时间上进行,回调在其主线程中执行,与MediaPlayer一致
+ * 与MediaPlayer一样,非法状态下的调用抛出IllegalStateException,并计入 {@link #illegalCalls()}
+ */
+class FakePlayerEngine implements PlayerEngine {
+
+    private static final int IDLE = 0;
+    private static final int INITIALIZED = 1;
+    private static final int PREPARING = 2;
+    private static final int PREPARED = 3;
+    private static final int STARTED = 4;
+    private static final int PAUSED = 5;
+    private static final int STOPPED = 6;
+    private static final int RELEASED = 7;
+
+    static class Config {
+        long prepareLatencyMs = 20;
+        // prepare完成后依次回调的缓冲百分比,间隔bufferingIntervalMs
+        int[] bufferingCurve = {10, 40, 70, 100};
+        long bufferingIntervalMs = 5;
+        // 非0时prepare完成时回调该错误,不再回调onPrepared
+        int errorWhat = 0;
+        int errorExtra = 0;
+        // 模拟断网时阻塞的stop/release
+        long stopLatencyMs = 0;
+        long releaseLatencyMs = 0;
+        int durationMs = 10000;
+        int videoWidth = 1280;
+        int videoHeight = 720;
+    }
+
+    private static final AtomicInteger sIllegalCalls = new AtomicInteger();
+
+    /**
+     * @param created 创建的所有播放器,按创建顺序
+     */
+    static Factory factory(final Config config, final VirtualThreads threads,
+                           final List<FakePlayerEngine> created) {
+        return new Factory() {
+            @Override
+            public PlayerEngine create() {
+                FakePlayerEngine engine = new FakePlayerEngine(config, threads);
+                synchronized (created) {
+                    created.add(engine);
+                }
+                return engine;
+            }
+        };
+    }
+
+    /**
+     * 所有实例累计的非法调用次数
+     */
+    static int illegalCalls() {
+        return sIllegalCalls.get();
+    }
+
+    private final Config mConfig;
+    private final VirtualThreads mThreads;
+    private final Scheduler.Worker mWorker;
+    private volatile Listener mListener;
+    private volatile int mState = IDLE;
+    // 每次prepare/stop/release递增,已过期的异步回调直接丢弃
+    private final AtomicInteger mSession = new AtomicInteger();
+    private volatile String mDataSource;
+    private volatile int mPosition;
+    private volatile boolean mLooping;
+    private volatile long mStartedAt = -1;//第一次start的虚拟时刻
+
+    FakePlayerEngine(Config config, VirtualThreads threads) {
+        mConfig = config;
+        mThreads = threads;
+        mWorker = threads.main.createWorker();
+    }
+
+    String getDataSource() {
+        return mDataSource;
+    }
+
+    boolean isReleased() {
+        return mState == RELEASED;
+    }
+
+    boolean isLooping() {
+        return mLooping;
+    }
+
+    /**
+     * @return 从未start过时为-1
+     */
+    long getStartedAt() {
+        return mStartedAt;
+    }
+
+    private synchronized void check(String op, int... allowed) {
+        for (int state : allowed) {
+            if (mState == state) {
+                return;
+            }
+        }
+        sIllegalCalls.incrementAndGet();
+        throw new IllegalStateException(op + " called in state " + mState);
+    }
+
+    private void checkNotReleased(String op) {
+        check(op, IDLE, INITIALIZED, PREPARING, PREPARED, STARTED, PAUSED, STOPPED);
+    }
+
+    private interface Event {
+        void deliver(Listener listener);
+    }
+
+    private void post(final int session, long delayMs, final Event event) {
+        mWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                // 与stop/release互斥,保证过期的回调不会改写状态
+                synchronized (FakePlayerEngine.this) {
+                    Listener listener = mListener;
+                    if (mSession.get() == session && listener != null) {
+                        event.deliver(listener);
+                    }
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void setDisplay(SurfaceHolder holder) {
+        checkNotReleased("setDisplay");
+    }
+
+    @Override
+    public void setSurface(Surface surface) {
+        checkNotReleased("setSurface");
+    }
+
+    @Override
+    public void setVideoScalingMode(int mode) {
+        check("setVideoScalingMode", INITIALIZED, PREPARING, PREPARED, STARTED, PAUSED, STOPPED);
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return mState == RELEASED ? 0 : mPosition;
+    }
+
+    @Override
+    public int getDuration() {
+        int state = mState;
+        return state == PREPARED || state == STARTED || state == PAUSED ? mConfig.durationMs : -1;
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return mState >= PREPARED && mState != RELEASED ? mConfig.videoWidth : 0;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return mState >= PREPARED && mState != RELEASED ? mConfig.videoHeight : 0;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mState == STARTED;
+    }
+
+    @Override
+    public synchronized void setDataSource(String path) throws IOException {
+        check("setDataSource", IDLE);
+        mDataSource = path;
+        mState = INITIALIZED;
+    }
+
+    @Override
+    public synchronized void setDataSource(MediaSource source) throws IOException {
+        check("setDataSource", IDLE);
+        mDataSource = source.getKey();
+        mState = INITIALIZED;
+    }
+
+    @Override
+    public synchronized void prepareAsync() {
+        check("prepareAsync", INITIALIZED, STOPPED);
+        mState = PREPARING;
+        final int session = mSession.incrementAndGet();
+        post(session, mConfig.prepareLatencyMs, new Event() {
+            @Override
+            public void deliver(Listener listener) {
+                if (mConfig.errorWhat != 0) {
+                    mState = IDLE;
+                    listener.onError(FakePlayerEngine.this, mConfig.errorWhat, mConfig.errorExtra);
+                    return;
+                }
+                mState = PREPARED;
+                listener.onVideoSizeChanged(FakePlayerEngine.this, mConfig.videoWidth, mConfig.videoHeight);
+                listener.onPrepared(FakePlayerEngine.this);
+            }
+        });
+        for (int i = 0; i < mConfig.bufferingCurve.length; i++) {
+            final int percent = mConfig.bufferingCurve[i];
+            post(session, mConfig.prepareLatencyMs + i * mConfig.bufferingIntervalMs, new Event() {
+                @Override
+                public void deliver(Listener listener) {
+                    if (mState != PREPARING && mState != IDLE) {
+                        listener.onBufferingUpdate(FakePlayerEngine.this, percent);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        check("start", PREPARED, STARTED, PAUSED);
+        mState = STARTED;
+        if (mStartedAt < 0) {
+            mStartedAt = mThreads.now();
+        }
+    }
+
+    @Override
+    public synchronized void pause() {
+        check("pause", STARTED, PAUSED);
+        mState = PAUSED;
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            check("stop", PREPARED, STARTED, PAUSED, STOPPED);
+            mSession.incrementAndGet();
+        }
+        mThreads.block(mConfig.stopLatencyMs);
+        synchronized (this) {
+            if (mState != RELEASED) {
+                mState = STOPPED;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void seekTo(int msec, boolean exact) throws Exception {
+        check("seekTo", PREPARED, STARTED, PAUSED);
+        mPosition = msec;
+        post(mSession.get(), 0, new Event() {
+            @Override
+            public void deliver(Listener listener) {
+                listener.onSeekComplete(FakePlayerEngine.this);
+            }
+        });
+    }
+
+    @Override
+    public void setNextEngine(PlayerEngine next) {
+        checkNotReleased("setNextEngine");
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        checkNotReleased("setLooping");
+        mLooping = looping;
+    }
+
+    @Override
+    public void release() {
+        synchronized (this) {
+            checkNotReleased("release");
+            mSession.incrementAndGet();
+            mListener = null;
+        }
+        mThreads.block(mConfig.releaseLatencyMs);
+        mState = RELEASED;
+    }
+}
@@ -0,0 +1,159 @@
+package org.lynxz.customwidgetlibrary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_ERROR;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_IDLE;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_PLAYING;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_PREPARED;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_PREPARING;
+import static org.lynxz.customwidgetlibrary.PlaybackStateMachine.STATE_RELEASING;
+
+/**
+ * PlaybackStateMachine 转换表及并发切换测试
+ */
+public class PlaybackStateMachineTest {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int ROUNDS = 20000;
+
+    @Test
+    public void illegalTransition_isRejected() throws Exception {
+        PlaybackStateMachine sm = new PlaybackStateMachine();
+        assertFalse(sm.transitionTo(STATE_PLAYING));
+        assertFalse(sm.compareAndSet(STATE_IDLE, STATE_PREPARED));
+        assertEquals(STATE_IDLE, sm.getState());
+
+        assertTrue(sm.compareAndSet(STATE_IDLE, STATE_PREPARING));
+        assertFalse(sm.compareAndSet(STATE_IDLE, STATE_PREPARING));
+        assertTrue(sm.transitionTo(STATE_ERROR));
+        assertFalse(sm.isInPlaybackState());
+    }
+
+    @Test
+    public void staleGeneration_isDiscarded() throws Exception {
+        PlaybackStateMachine sm = new PlaybackStateMachine();
+        int oldGeneration = sm.newGeneration();
+        int newGeneration = sm.newGeneration();
+
+        assertFalse(sm.transitionTo(oldGeneration, STATE_PREPARING));
+        assertEquals(STATE_IDLE, sm.getState());
+        assertTrue(sm.transitionTo(newGeneration, STATE_PREPARING));
+    }
+
+    /**
+     * 多个线程同时推动 idle -> preparing -> prepared -> playing -> releasing -> idle 循环,
+     * 每一步CAS成功的次数相差不能超过1,否则说明有状态被并发覆盖
+     */
+    @Test
+    public void concurrentCycle_neverSkipsState() throws Exception {
+        final PlaybackStateMachine sm = new PlaybackStateMachine();
+        final int[] cycle = {STATE_IDLE, STATE_PREPARING, STATE_PREPARED, STATE_PLAYING, STATE_RELEASING};
+        final AtomicInteger[] counts = new AtomicInteger[cycle.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicInteger();
+        }
+
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for (int r = 0; r < ROUNDS; r++) {
+                    for (int i = 0; i < cycle.length; i++) {
+                        int next = (i + 1) % cycle.length;
+                        if (sm.compareAndSet(cycle[i], cycle[next])) {
+                            counts[i].incrementAndGet();
+                        }
+                    }
+                }
+            }
+        });
+
+        int first = counts[0].get();
+        assertTrue(first > 0);
+        for (AtomicInteger count : counts) {
+            assertTrue(Math.abs(count.get() - first) <= 1);
+        }
+    }
+
+    /**
+     * 模拟多线程反复 setVideoPath/surfaceDestroyed,同时有旧视频的异步回调到达
+     * 旧generation的回调不能修改状态,且最终状态必须合法
+     */
+    @Test
+    public void hammerSetVideoPathAndSurfaceDestroyed() throws Exception {
+        final PlaybackStateMachine sm = new PlaybackStateMachine();
+        final AtomicInteger setPathCount = new AtomicInteger();
+        final AtomicInteger staleApplied = new AtomicInteger();
+
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for (int r = 0; r < ROUNDS; r++) {
+                    switch (r % 3) {
+                        case 0:
+                            // setVideoPath: 新generation, 释放旧播放器后重新prepare
+                            int generation = sm.newGeneration();
+                            setPathCount.incrementAndGet();
+                            sm.transitionTo(STATE_RELEASING);
+                            sm.compareAndSet(STATE_RELEASING, STATE_IDLE);
+                            sm.transitionTo(generation, STATE_PREPARING);
+                            break;
+                        case 1:
+                            // surfaceDestroyed
+                            sm.transitionTo(STATE_RELEASING);
+                            sm.compareAndSet(STATE_RELEASING, STATE_IDLE);
+                            break;
+                        default:
+                            // 旧视频的onPrepared回调
+                            int stale = sm.getGeneration() - 1;
+                            if (sm.transitionTo(stale, STATE_PREPARED)) {
+                                staleApplied.incrementAndGet();
+                            }
+                            break;
+                    }
+                }
+            }
+        });
+
+        assertEquals(setPathCount.get(), sm.getGeneration());
+        assertEquals(0, staleApplied.get());
+        int state = sm.getState();
+        assertTrue(state >= STATE_ERROR && state <= PlaybackStateMachine.STATE_STOPED);
+    }
+
+    private static void runConcurrently(final Runnable task) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        task.run();
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        startLatch.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+}
@@ -0,0 +1,242 @@
+package org.lynxz.customwidgetlibrary;
+
+import android.media.MediaPlayer;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 使用 {@link FakePlayerEngine} 在jvm上测试 {@link VideoPlayerController} 快速切换视频时的状态机,指令队列及异步释放
+ * 主线程和指令线程由 {@link VirtualThreads} 在虚拟时间上模拟,播放器耗时不依赖真实时间,结果是确定的
+ * 旧播放器释放完成前只记录最新地址,释放完成后只加载最后一个视频
+ */
+public class PlayerEngineSwitchTest {
+
+    // 足够所有异步操作执行完成的虚拟时长
+    private static final long SETTLE_MS = 60 * 1000;
+
+    private VirtualThreads mThreads;
+    private final List<FakePlayerEngine> mCreated = new ArrayList<>();
+    private FakePlayerEngine.Config mConfig;
+    private RecordingTarget mTarget;
+    private VideoPlayerController mController;
+    private int mIllegalCallsBefore;
+
+    @Before
+    public void setUp() {
+        mThreads = new VirtualThreads();
+        mConfig = new FakePlayerEngine.Config();
+        mTarget = new RecordingTarget();
+        mIllegalCallsBefore = FakePlayerEngine.illegalCalls();
+    }
+
+    @After
+    public void tearDown() {
+        // 释放播放器,归还进程级的解码器配额
+        if (mController != null) {
+            mController.release();
+            mThreads.advanceTimeBy(SETTLE_MS);
+        }
+    }
+
+    /**
+     * 释放期间连续切换200次,只会创建两个播放器,最终播放最后一个视频,其余播放器全部释放
+     */
+    @Test
+    public void rapidSwitch_onlyLatestClipIsLoaded() {
+        mConfig.releaseLatencyMs = 50;
+        mConfig.stopLatencyMs = 20;
+        VideoPlayerController controller = newController();
+
+        for (int i = 0; i < 200; i++) {
+            controller.setVideoPath("http://test/clip" + i + ".mp4");
+        }
+        mThreads.advanceTimeBy(SETTLE_MS);
+
+        assertEquals(2, mCreated.size());
+        FakePlayerEngine playing = mCreated.get(1);
+        assertTrue(controller.isPlaying());
+        assertEquals("http://test/clip199.mp4", playing.getDataSource());
+        assertSame(playing, mTarget.mAttached);
+        assertTrue(mCreated.get(0).isReleased());
+        assertEquals(-1, mCreated.get(0).getStartedAt());
+        assertEquals(0, FakePlayerEngine.illegalCalls() - mIllegalCallsBefore);
+    }
+
+    /**
+     * stop/release阻塞时每5ms切换一次视频,阻塞只发生在指令线程
+     * 最后一次切换后最多等待一次释放再加上prepare就开始播放
+     */
+    @Test
+    public void slowRelease_neverBlocksMainThread() {
+        mConfig.releaseLatencyMs = 200;
+        mConfig.stopLatencyMs = 200;
+        mConfig.prepareLatencyMs = 10;
+        VideoPlayerController controller = newController();
+
+        final int switches = 100;
+        long lastSwitch = 0;
+        for (int i = 0; i < switches; i++) {
+            controller.setVideoPath("http://test/clip" + i + ".mp4");
+            lastSwitch = mThreads.now();
+            mThreads.advanceTimeBy(5);
+        }
+        mThreads.advanceTimeBy(SETTLE_MS);
+
+        // 主线程从不调用阻塞的stop/release
+        assertEquals(0, mThreads.mainThreadBlockedMs());
+        FakePlayerEngine playing = mCreated.get(mCreated.size() - 1);
+        assertTrue(controller.isPlaying());
+        assertEquals("http://test/clip" + (switches - 1) + ".mp4", playing.getDataSource());
+        long latencyMs = playing.getStartedAt() - lastSwitch;
+        assertTrue(latencyMs <= mConfig.stopLatencyMs + mConfig.releaseLatencyMs + mConfig.prepareLatencyMs);
+        // 释放期间的切换全部合并,创建的播放器远少于切换次数
+        assertTrue(mCreated.size() < switches / 4);
+        for (int i = 0; i < mCreated.size() - 1; i++) {
+            assertTrue(mCreated.get(i).isReleased());
+        }
+        assertEquals(0, FakePlayerEngine.illegalCalls() - mIllegalCallsBefore);
+    }
+
+    /**
+     * prepare过程中切换视频,旧视频不会进入prepared状态,只播放新视频
+     */
+    @Test
+    public void switchDuringPrepare_playsOnlyNewClip() {
+        mConfig.prepareLatencyMs = 100;
+        mConfig.releaseLatencyMs = 0;
+        VideoPlayerController controller = newController();
+        final int[] prepared = new int[1];
+        controller.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mp) {
+                prepared[0]++;
+            }
+        });
+
+        controller.setVideoPath("http://test/a.mp4");
+        mThreads.advanceTimeBy(20);
+        controller.setVideoPath("http://test/b.mp4");
+        mThreads.advanceTimeBy(SETTLE_MS);
+
+        assertEquals(2, mCreated.size());
+        assertTrue(controller.isPlaying());
+        assertEquals("http://test/b.mp4", mCreated.get(1).getDataSource());
+        assertEquals(1, prepared[0]);
+        assertEquals(-1, mCreated.get(0).getStartedAt());
+        assertTrue(mCreated.get(0).isReleased());
+        assertEquals(0, FakePlayerEngine.illegalCalls() - mIllegalCallsBefore);
+    }
+
+    /**
+     * prepare出错且不再自动恢复时进入error状态,通知调用者,不会再发出start
+     */
+    @Test
+    public void prepareError_entersErrorState() {
+        mConfig.errorWhat = MediaPlayer.MEDIA_ERROR_UNKNOWN;
+        mConfig.errorExtra = MediaPlayer.MEDIA_ERROR_IO;
+        VideoPlayerController controller = newController();
+        controller.setAutoRecoveryRetries(0);
+        final int[] errors = new int[1];
+        controller.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                assertEquals(MediaPlayer.MEDIA_ERROR_IO, extra);
+                errors[0]++;
+                return true;
+            }
+        });
+
+        controller.setVideoPath("http://test/broken.mp4");
+        mThreads.advanceTimeBy(SETTLE_MS);
+
+        assertEquals(1, errors[0]);
+        assertFalse(controller.isPlaying());
+        assertFalse(controller.canPause());
+        assertEquals(1, mCreated.size());
+        assertEquals(-1, mCreated.get(0).getStartedAt());
+        assertEquals(0, FakePlayerEngine.illegalCalls() - mIllegalCallsBefore);
+    }
+
+    /**
+     * 本地文件的io错误不会自动重试,第一次出错就通知调用者
+     */
+    @Test
+    public void localIoError_reportsErrorWithoutRecovery() {
+        mConfig.errorWhat = MediaPlayer.MEDIA_ERROR_UNKNOWN;
+        mConfig.errorExtra = MediaPlayer.MEDIA_ERROR_IO;
+        VideoPlayerController controller = newController();
+        final int[] errors = new int[1];
+        controller.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                errors[0]++;
+                return true;
+            }
+        });
+
+        controller.setVideoPath("/sdcard/local.mp4");
+        mThreads.advanceTimeBy(SETTLE_MS);
+
+        assertEquals(1, errors[0]);
+        assertFalse(controller.isPlaying());
+        assertEquals(1, mCreated.size());
+        assertEquals(0, FakePlayerEngine.illegalCalls() - mIllegalCallsBefore);
+    }
+
+    /**
+     * 单元测试中android方法返回默认值,view只作为占位,surface视为已创建
+     */
+    private VideoPlayerController newController() {
+        mController = new VideoPlayerController(new View(null), mTarget, mThreads.main, mThreads.commands);
+        mController.setEngineFactory(FakePlayerEngine.factory(mConfig, mThreads, mCreated));
+        mController.onSurfaceCreated();
+        return mController;
+    }
+
+    /**
+     * 记录当前关联到surface的播放器
+     */
+    private static class RecordingTarget implements VideoPlayerController.RenderTarget {
+
+        PlayerEngine mAttached;
+
+        @Override
+        public void attach(PlayerEngine player) {
+            mAttached = player;
+        }
+
+        @Override
+        public void detach(PlayerEngine player) {
+            if (mAttached == player) {
+                mAttached = null;
+            }
+        }
+
+        @Override
+        public void applyScaleMode(PlayerEngine player, int scaleMode, int videoWidth, int videoHeight) {
+        }
+
+        @Override
+        public void onVideoChanged(String path) {
+        }
+
+        @Override
+        public void onFirstFrame() {
+        }
+
+        @Override
+        public void releaseRetainedSurface() {
+        }
+    }
+}
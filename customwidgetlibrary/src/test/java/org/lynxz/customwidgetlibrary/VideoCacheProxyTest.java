@@ -0,0 +1,278 @@
+package org.lynxz.customwidgetlibrary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VideoCacheProxy 测试,使用本地的简易http服务代替视频源站
+ */
+public class VideoCacheProxyTest {
+
+    private static final int VIDEO_SIZE = SegmentCache.SEGMENT_SIZE * 3 + 1234;
+
+    private File mCacheDir;
+    private byte[] mVideo;
+    private OriginServer mOrigin;
+    private VideoCacheProxy mProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheDir = File.createTempFile("video_cache", "");
+        mCacheDir.delete();
+        mCacheDir.mkdirs();
+
+        mVideo = new byte[VIDEO_SIZE];
+        new Random(42).nextBytes(mVideo);
+        mOrigin = new OriginServer(mVideo);
+        mOrigin.start();
+
+        mProxy = new VideoCacheProxy(mCacheDir, 64L * 1024 * 1024);
+        mProxy.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mProxy.shutdown();
+        mOrigin.stop();
+        deleteRecursive(mCacheDir);
+    }
+
+    @Test
+    public void fullRequest_returnsOriginBytesAndFillsCache() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        assertFalse(proxyUrl.equals(mOrigin.url()));
+
+        assertArrayEquals(mVideo, download(proxyUrl, -1));
+        assertTrue(mProxy.isCached(mOrigin.url()));
+    }
+
+    @Test
+    public void restartAfterShutdown_servesRequests() throws Exception {
+        mProxy.shutdown();
+        assertFalse(mProxy.isRunning());
+        mProxy.start();
+
+        assertTrue(mProxy.isRunning());
+        assertArrayEquals(mVideo, download(mProxy.getProxyUrl(mOrigin.url()), -1));
+    }
+
+    @Test
+    public void replay_isServedOfflineFromCache() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        download(proxyUrl, -1);
+        int originRequests = mOrigin.requestCount.get();
+
+        mOrigin.stop();
+        assertArrayEquals(mVideo, download(proxyUrl, -1));
+        assertEquals(originRequests, mOrigin.requestCount.get());
+    }
+
+    @Test
+    public void rangeRequest_returnsPartialContent() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        int offset = SegmentCache.SEGMENT_SIZE + 100;
+
+        byte[] expected = Arrays.copyOfRange(mVideo, offset, mVideo.length);
+        assertArrayEquals(expected, download(proxyUrl, offset));
+        // 再从头完整读一遍,前面缺失的分段补齐后结果依然正确
+        assertArrayEquals(mVideo, download(proxyUrl, -1));
+    }
+
+    @Test
+    public void firstPlay_usesSingleOriginRequest() throws Exception {
+        download(mProxy.getProxyUrl(mOrigin.url()), -1);
+        assertEquals(1, mOrigin.requestCount.get());
+    }
+
+    @Test
+    public void boundedRange_returnsOnlyRequestedBytes() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        int start = SegmentCache.SEGMENT_SIZE - 10;
+        int end = SegmentCache.SEGMENT_SIZE + 20;
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(proxyUrl).openConnection();
+        conn.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        assertEquals(206, conn.getResponseCode());
+        assertEquals("bytes " + start + "-" + end + "/" + VIDEO_SIZE, conn.getHeaderField("Content-Range"));
+        InputStream in = conn.getInputStream();
+        try {
+            assertArrayEquals(Arrays.copyOfRange(mVideo, start, end + 1), readAll(in));
+        } finally {
+            in.close();
+            conn.disconnect();
+        }
+    }
+
+    @Test
+    public void rangeBeyondEnd_returns416() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        download(proxyUrl, -1);
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(proxyUrl).openConnection();
+        conn.setRequestProperty("Range", "bytes=" + VIDEO_SIZE + "-");
+        assertEquals(416, conn.getResponseCode());
+        assertEquals("bytes */" + VIDEO_SIZE, conn.getHeaderField("Content-Range"));
+        conn.disconnect();
+    }
+
+    @Test
+    public void requestWithoutToken_isRejected() throws Exception {
+        String proxyUrl = mProxy.getProxyUrl(mOrigin.url());
+        String path = proxyUrl.substring(proxyUrl.indexOf('/', "http://".length()) + 1);
+        String withoutToken = proxyUrl.substring(0, proxyUrl.length() - path.length())
+                + path.substring(path.indexOf('/') + 1);
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(withoutToken).openConnection();
+        assertEquals(403, conn.getResponseCode());
+        conn.disconnect();
+        assertEquals(0, mOrigin.requestCount.get());
+    }
+
+    @Test
+    public void cacheSize_isBoundedByBudget() throws Exception {
+        mProxy.shutdown();
+        long budget = SegmentCache.SEGMENT_SIZE * 2;
+        mProxy = new VideoCacheProxy(mCacheDir, budget);
+        mProxy.start();
+
+        assertArrayEquals(mVideo, download(mProxy.getProxyUrl(mOrigin.url()), -1));
+        assertTrue(mProxy.getCache().getTotalBytes() <= budget);
+        assertFalse(mProxy.isCached(mOrigin.url()));
+    }
+
+    private static byte[] download(String url, long offset) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (offset >= 0) {
+            conn.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        int code = conn.getResponseCode();
+        assertEquals(offset >= 0 ? 206 : 200, code);
+        InputStream in = conn.getInputStream();
+        try {
+            return readAll(in);
+        } finally {
+            in.close();
+            conn.disconnect();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void deleteRecursive(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteRecursive(c);
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * 支持Range请求的简易http服务
+     */
+    private static class OriginServer {
+        final AtomicInteger requestCount = new AtomicInteger();
+        private final byte[] mData;
+        private ServerSocket mServer;
+        private volatile boolean mRunning;
+
+        OriginServer(byte[] data) {
+            mData = data;
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + mServer.getLocalPort() + "/video.mp4";
+        }
+
+        void start() throws IOException {
+            mServer = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+            mRunning = true;
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (mRunning) {
+                        try {
+                            Socket socket = mServer.accept();
+                            requestCount.incrementAndGet();
+                            serve(socket);
+                        } catch (IOException ignore) {
+                        }
+                    }
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+
+        void stop() throws IOException {
+            mRunning = false;
+            mServer.close();
+        }
+
+        private void serve(Socket socket) throws IOException {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                long start = 0;
+                boolean ranged = false;
+                String line = reader.readLine();
+                while ((line = reader.readLine()) != null && line.length() > 0) {
+                    if (line.toLowerCase().startsWith("range: bytes=")) {
+                        String value = line.substring("range: bytes=".length());
+                        start = Long.parseLong(value.substring(0, value.indexOf('-')));
+                        ranged = true;
+                    }
+                }
+
+                OutputStream out = socket.getOutputStream();
+                StringBuilder header = new StringBuilder();
+                if (ranged) {
+                    header.append("HTTP/1.1 206 Partial Content\r\nContent-Range: bytes ")
+                            .append(start).append('-').append(mData.length - 1).append('/')
+                            .append(mData.length).append("\r\n");
+                } else {
+                    header.append("HTTP/1.1 200 OK\r\n");
+                }
+                header.append("Content-Length: ").append(mData.length - start)
+                        .append("\r\nConnection: close\r\n\r\n");
+                out.write(header.toString().getBytes("UTF-8"));
+                out.write(mData, (int) start, (int) (mData.length - start));
+                out.flush();
+            } catch (IOException ignore) {
+                // 代理切回本地缓存时会主动断开
+            } finally {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.lynxz.customwidgetlibrary;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.schedulers.TestScheduler;
+
+/**
+ * 在 {@link TestScheduler} 的虚拟时间上模拟主线程和播放器指令线程,测试结果与机器快慢无关
+ * 所有任务都在调用 {@link #advanceTimeBy(long)} 的线程中依次执行:
+ * 1. 指令线程同一时刻只执行一个任务,任务中调用 {@link #block(long)} 表示阻塞了多久,
+ * 阻塞期间到达的指令在阻塞结束后才执行
+ * 2. 指令线程中发往主线程的任务按发出时已阻塞的时长延后,相当于阻塞结束后才发出
+ * 3. 主线程中调用 {@link #block(long)} 不会推进时间,只累计到 {@link #mainThreadBlockedMs()}
+ */
+class VirtualThreads {
+
+    private final TestScheduler mScheduler = new TestScheduler();
+    private final Scheduler.Worker mCommandWorker = mScheduler.createWorker();
+    private long mCommandFreeAt = 0;//指令线程空闲的时刻
+    private boolean mInCommand = false;
+    private long mCommandBlockedMs = 0;//当前指令任务已阻塞的时长
+    private long mMainBlockedMs = 0;
+
+    /**
+     * 当前时刻,在指令线程中调用时包括已阻塞的时长
+     */
+    long now() {
+        return mScheduler.now() + (mInCommand ? mCommandBlockedMs : 0);
+    }
+
+    void advanceTimeBy(long ms) {
+        mScheduler.advanceTimeBy(ms, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 模拟当前线程的阻塞调用
+     */
+    void block(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        if (mInCommand) {
+            mCommandBlockedMs += ms;
+        } else {
+            mMainBlockedMs += ms;
+        }
+    }
+
+    /**
+     * 主线程中发生的阻塞总时长
+     */
+    long mainThreadBlockedMs() {
+        return mMainBlockedMs;
+    }
+
+    /**
+     * 主线程
+     */
+    final Scheduler main = new Scheduler() {
+        @Override
+        public Worker createWorker() {
+            final Worker worker = mScheduler.createWorker();
+            return new Worker() {
+                @Override
+                public Subscription schedule(Action0 action) {
+                    return schedule(action, 0, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+                    long delayMs = unit.toMillis(delayTime) + (mInCommand ? mCommandBlockedMs : 0);
+                    return worker.schedule(action, delayMs, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public long now() {
+                    return VirtualThreads.this.now();
+                }
+
+                @Override
+                public void unsubscribe() {
+                    worker.unsubscribe();
+                }
+
+                @Override
+                public boolean isUnsubscribed() {
+                    return worker.isUnsubscribed();
+                }
+            };
+        }
+
+        @Override
+        public long now() {
+            return VirtualThreads.this.now();
+        }
+    };
+
+    /**
+     * 播放器指令线程
+     */
+    final Executor commands = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            long delayMs = Math.max(0, mCommandFreeAt - mScheduler.now());
+            mCommandWorker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    mInCommand = true;
+                    mCommandBlockedMs = 0;
+                    try {
+                        command.run();
+                    } finally {
+                        mInCommand = false;
+                        mCommandFreeAt = mScheduler.now() + mCommandBlockedMs;
+                    }
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    };
+}